@@ -1,47 +1,107 @@
 import tester.Tester;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.DoublePredicate;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
 import java.util.function.Predicate;
 
+//to represent a double-ended queue, so callers can switch between the linked and array
+//implementations without code changes
+//iterating visits the items from head to tail
+interface IDeque<T> extends Iterable<T> {
+  // to return the amount of items in the deque
+  int size();
+
+  // to add an item to the front of the deque
+  void addAtHead(T data);
+
+  // to add an item to the end of the deque
+  void addAtTail(T data);
+
+  // to remove the item at the front of the deque and return it
+  T removeFromHead();
+
+  // to remove the item at the end of the deque and return it
+  T removeFromTail();
+
+  // to return the first item that passes the predicate, or null if none do
+  T findFirst(Predicate<T> pred);
+}
+
 //to represent a deque data structure
-class Deque<T> {
+//the count is taken once by the Deque(Sentinel) constructor and then kept by the add and
+//remove methods here, so size does not reflect nodes linked in afterwards with
+//new Node(data, next, prev) or unlinked directly with Node.remove
+class Deque<T> implements IDeque<T> {
   Sentinel<T> header;
+  int count;
 
   Deque() {
     this.header = new Sentinel<T>();
+    this.count = 0;
   }
 
   Deque(Sentinel<T> header) {
     this.header = header;
+    this.count = header.next.size();
   }
 
   // to return the amount of nodes in a deque
-  int size() {
-    return this.header.next.size();
+  public int size() {
+    return this.count;
   }
 
   // to add a node to the front of deque
-  void addAtHead(T data) {
+  public void addAtHead(T data) {
     this.header.addAtHead(data);
+    this.count += 1;
   }
 
   // to add a node to the end of deque
-  void addAtTail(T data) {
+  public void addAtTail(T data) {
     this.header.addAtTail(data);
+    this.count += 1;
   }
 
   // to remove the node at the front of deque and return it
-  T removeFromHead() {
-    return this.header.next.remove();
+  public T removeFromHead() {
+    T data = this.header.next.remove();
+    this.count -= 1;
+    return data;
   }
 
   // to remove the node at the end of deque and return it
-  T removeFromTail() {
-    return this.header.prev.remove();
+  public T removeFromTail() {
+    T data = this.header.prev.remove();
+    this.count -= 1;
+    return data;
+  }
+
+  // to return an iterator over the data from head to tail
+  public Iterator<T> iterator() {
+    return new DequeIterator<T>(this.header.next);
   }
 
   // to find node given the predicate, returns sentinel if none are found
   ANode<T> find(Predicate<T> pred) {
     return this.header.next.find(pred);
   }
+
+  // to return the data of the first node that passes the predicate, or null if none do
+  public T findFirst(Predicate<T> pred) {
+    return this.find(pred).dataOrNull();
+  }
 }
 
 //to represent either a sentinel or node
@@ -76,6 +136,12 @@ abstract class ANode<T> {
 
   // to find node given the predicate, returns sentinel if none are found
   abstract ANode<T> find(Predicate<T> pred);
+
+  // to return the data of this node, or null for the sentinel
+  abstract T dataOrNull();
+
+  // to return whether this is the sentinel that ends a deque
+  abstract boolean isSentinel();
 }
 
 //to represent a sentinel connected to front and tail of deque
@@ -110,6 +176,16 @@ class Sentinel<T> extends ANode<T> {
   ANode<T> find(Predicate<T> pred) {
     return this;
   }
+
+  // to return null, since the sentinel has no data
+  T dataOrNull() {
+    return null;
+  }
+
+  // to return true, since this is the sentinel
+  boolean isSentinel() {
+    return true;
+  }
 }
 
 //to represent a single node with data in a deque
@@ -133,9 +209,13 @@ class Node<T> extends ANode<T> {
     this.prev.updateNext(this);
   }
 
-  // to return the amount of nodes in a deque
+  // to return the amount of nodes from this one to the sentinel
   int size() {
-    return 1 + this.next.size();
+    int count = 0;
+    for (ANode<T> current = this; !current.isSentinel(); current = current.next) {
+      count += 1;
+    }
+    return count;
   }
 
   // to remove this node and return it
@@ -147,11 +227,876 @@ class Node<T> extends ANode<T> {
 
   // to find node given the predicate, returns sentinel if none are found
   ANode<T> find(Predicate<T> pred) {
-    if (pred.test(data)) {
-      return this;
+    ANode<T> current = this;
+    while (!current.isSentinel() && !pred.test(current.dataOrNull())) {
+      current = current.next;
+    }
+    return current;
+  }
+
+  // to return the data of this node
+  T dataOrNull() {
+    return this.data;
+  }
+
+  // to return false, since this node holds data
+  boolean isSentinel() {
+    return false;
+  }
+}
+
+//to represent an iterator over the data of a Deque, from the given node to the sentinel
+class DequeIterator<T> implements Iterator<T> {
+  ANode<T> current;
+
+  DequeIterator(ANode<T> current) {
+    this.current = current;
+  }
+
+  // to return whether there is another node before the sentinel
+  public boolean hasNext() {
+    return !this.current.isSentinel();
+  }
+
+  // to return the data of the next node and move past it
+  public T next() {
+    if (!this.hasNext()) {
+      throw new NoSuchElementException("No more items in deque");
+    }
+    T data = this.current.dataOrNull();
+    this.current = this.current.next;
+    return data;
+  }
+}
+
+//to represent the bookkeeping of a deque kept in a circular array: the items run from
+//head around the end of the array, so both ends are added to and removed from without
+//allocating or following pointers
+//the array doubles when it is full, and if shrinks is set it halves when it falls to a
+//quarter full, never below MIN_CAPACITY; subclasses hold the array and its elements
+abstract class ARingDeque {
+  static final int MIN_CAPACITY = 16;
+
+  int head;
+  int size;
+  boolean shrinks;
+
+  ARingDeque(boolean shrinks) {
+    this.head = 0;
+    this.size = 0;
+    this.shrinks = shrinks;
+  }
+
+  // returns the array length to use for the given capacity: a power of 2, so wrapping an
+  // index is a mask, and at least MIN_CAPACITY
+  static int capacityFor(int capacity) {
+    if (capacity < 1 || capacity > (1 << 30)) {
+      throw new IllegalArgumentException("Given capacity is out of range");
+    }
+    return Math.max(MIN_CAPACITY, Integer.highestOneBit(capacity - 1) << 1);
+  }
+
+  // to return the length of the array
+  abstract int capacity();
+
+  // to return the array
+  abstract Object array();
+
+  // to return a new, empty array of the given length
+  abstract Object allocate(int capacity);
+
+  // EFFECT: replaces the array with the given one
+  abstract void replace(Object array);
+
+  // to return the amount of items in the deque
+  public int size() {
+    return this.size;
+  }
+
+  // to return the array index of the item the given number of places from the head
+  int slot(int index) {
+    return (this.head + index) & (this.capacity() - 1);
+  }
+
+  // to return the array index of the item the given number of places from the head,
+  // checking it is in the deque
+  int checkedSlot(int index) {
+    if (index < 0 || index >= this.size) {
+      throw new IllegalArgumentException("Given index is out of bounds");
+    }
+    return this.slot(index);
+  }
+
+  // EFFECT: makes room for an item before the head, growing the array if it is full
+  // returns the array index to put it at, in the array as it is after this call
+  int pushHead() {
+    if (this.size == this.capacity()) {
+      this.resize(this.capacity() * 2);
+    }
+    this.head = (this.head - 1) & (this.capacity() - 1);
+    this.size += 1;
+    return this.head;
+  }
+
+  // EFFECT: makes room for an item after the tail, growing the array if it is full
+  // returns the array index to put it at, in the array as it is after this call
+  int pushTail() {
+    if (this.size == this.capacity()) {
+      this.resize(this.capacity() * 2);
+    }
+    this.size += 1;
+    return this.slot(this.size - 1);
+  }
+
+  // EFFECT: takes the item at the head out of the deque, leaving it in the array
+  // returns its array index, which stays valid until shrinkIfSparse is called
+  int takeHead() {
+    if (this.size == 0) {
+      throw new RuntimeException("Cannot remove empty list");
+    }
+    int slot = this.head;
+    this.head = this.slot(1);
+    this.size -= 1;
+    return slot;
+  }
+
+  // EFFECT: takes the item at the tail out of the deque, leaving it in the array
+  // returns its array index, which stays valid until shrinkIfSparse is called
+  int takeTail() {
+    if (this.size == 0) {
+      throw new RuntimeException("Cannot remove empty list");
+    }
+    this.size -= 1;
+    return this.slot(this.size);
+  }
+
+  // EFFECT: halves the array if shrinking is on and it is at most a quarter full
+  void shrinkIfSparse() {
+    if (this.shrinks && this.capacity() > MIN_CAPACITY && this.size <= this.capacity() / 4) {
+      this.resize(this.capacity() / 2);
+    }
+  }
+
+  // EFFECT: moves the items, in order, to the front of a new array of the given length
+  void resize(int capacity) {
+    Object resized = this.allocate(capacity);
+    int first = Math.min(this.size, this.capacity() - this.head);
+    System.arraycopy(this.array(), this.head, resized, 0, first);
+    System.arraycopy(this.array(), 0, resized, first, this.size - first);
+    this.replace(resized);
+    this.head = 0;
+  }
+}
+
+//to represent a deque of items kept in a circular Object array
+class RingDeque<T> extends ARingDeque implements IDeque<T> {
+  Object[] items;
+
+  RingDeque(int capacity, boolean shrinks) {
+    super(shrinks);
+    this.items = new Object[ARingDeque.capacityFor(capacity)];
+  }
+
+  RingDeque() {
+    this(MIN_CAPACITY, false);
+  }
+
+  // to return the length of the array
+  int capacity() {
+    return this.items.length;
+  }
+
+  // to return the array
+  Object array() {
+    return this.items;
+  }
+
+  // to return a new, empty array of the given length
+  Object allocate(int capacity) {
+    return new Object[capacity];
+  }
+
+  // EFFECT: replaces the array with the given one
+  void replace(Object array) {
+    this.items = (Object[]) array;
+  }
+
+  // to add an item to the front of the deque
+  public void addAtHead(T data) {
+    int slot = this.pushHead();
+    this.items[slot] = data;
+  }
+
+  // to add an item to the end of the deque
+  public void addAtTail(T data) {
+    int slot = this.pushTail();
+    this.items[slot] = data;
+  }
+
+  // to remove the item at the front of the deque and return it
+  public T removeFromHead() {
+    return this.clear(this.takeHead());
+  }
+
+  // to remove the item at the end of the deque and return it
+  public T removeFromTail() {
+    return this.clear(this.takeTail());
+  }
+
+  // EFFECT: empties the given array index, so the array does not keep its item alive, and
+  // shrinks the array if it is sparse
+  // returns the item that was there
+  @SuppressWarnings("unchecked")
+  T clear(int slot) {
+    T data = (T) this.items[slot];
+    this.items[slot] = null;
+    this.shrinkIfSparse();
+    return data;
+  }
+
+  // to return the item the given number of places from the head
+  @SuppressWarnings("unchecked")
+  T get(int index) {
+    return (T) this.items[this.checkedSlot(index)];
+  }
+
+  // to return the place from the head of the first item that passes the predicate, or
+  // -1 if none do
+  @SuppressWarnings("unchecked")
+  int find(Predicate<T> pred) {
+    for (int index = 0; index < this.size; index++) {
+      if (pred.test((T) this.items[this.slot(index)])) {
+        return index;
+      }
+    }
+    return -1;
+  }
+
+  // to return the first item that passes the predicate, or null if none do
+  public T findFirst(Predicate<T> pred) {
+    int index = this.find(pred);
+    return index < 0 ? null : this.get(index);
+  }
+
+  // to return an iterator over the items from head to tail
+  public Iterator<T> iterator() {
+    return new RingIterator<T>(this);
+  }
+}
+
+//to represent an iterator over the items of a RingDeque, from head to tail
+class RingIterator<T> implements Iterator<T> {
+  RingDeque<T> deque;
+  int index;
+
+  RingIterator(RingDeque<T> deque) {
+    this.deque = deque;
+    this.index = 0;
+  }
+
+  // to return whether there is another item
+  public boolean hasNext() {
+    return this.index < this.deque.size();
+  }
+
+  // to return the next item and move past it
+  public T next() {
+    if (!this.hasNext()) {
+      throw new NoSuchElementException("No more items in deque");
+    }
+    this.index += 1;
+    return this.deque.get(this.index - 1);
+  }
+}
+
+//to represent a deque of ints kept in a circular int array, so values are never boxed
+class IntDeque extends ARingDeque {
+  int[] items;
+
+  IntDeque(int capacity, boolean shrinks) {
+    super(shrinks);
+    this.items = new int[ARingDeque.capacityFor(capacity)];
+  }
+
+  IntDeque() {
+    this(MIN_CAPACITY, false);
+  }
+
+  // to return the length of the array
+  int capacity() {
+    return this.items.length;
+  }
+
+  // to return the array
+  Object array() {
+    return this.items;
+  }
+
+  // to return a new, empty array of the given length
+  Object allocate(int capacity) {
+    return new int[capacity];
+  }
+
+  // EFFECT: replaces the array with the given one
+  void replace(Object array) {
+    this.items = (int[]) array;
+  }
+
+  // to add a value to the front of the deque
+  void addAtHead(int value) {
+    int slot = this.pushHead();
+    this.items[slot] = value;
+  }
+
+  // to add a value to the end of the deque
+  void addAtTail(int value) {
+    int slot = this.pushTail();
+    this.items[slot] = value;
+  }
+
+  // to remove the value at the front of the deque and return it
+  int removeFromHead() {
+    int value = this.items[this.takeHead()];
+    this.shrinkIfSparse();
+    return value;
+  }
+
+  // to remove the value at the end of the deque and return it
+  int removeFromTail() {
+    int value = this.items[this.takeTail()];
+    this.shrinkIfSparse();
+    return value;
+  }
+
+  // to return the value the given number of places from the head
+  int get(int index) {
+    return this.items[this.checkedSlot(index)];
+  }
+
+  // to return the place from the head of the first value that passes the predicate, or
+  // -1 if none do
+  int find(IntPredicate pred) {
+    for (int index = 0; index < this.size; index++) {
+      if (pred.test(this.items[this.slot(index)])) {
+        return index;
+      }
+    }
+    return -1;
+  }
+}
+
+//to represent a deque of longs kept in a circular long array, so values are never boxed
+class LongDeque extends ARingDeque {
+  long[] items;
+
+  LongDeque(int capacity, boolean shrinks) {
+    super(shrinks);
+    this.items = new long[ARingDeque.capacityFor(capacity)];
+  }
+
+  LongDeque() {
+    this(MIN_CAPACITY, false);
+  }
+
+  // to return the length of the array
+  int capacity() {
+    return this.items.length;
+  }
+
+  // to return the array
+  Object array() {
+    return this.items;
+  }
+
+  // to return a new, empty array of the given length
+  Object allocate(int capacity) {
+    return new long[capacity];
+  }
+
+  // EFFECT: replaces the array with the given one
+  void replace(Object array) {
+    this.items = (long[]) array;
+  }
+
+  // to add a value to the front of the deque
+  void addAtHead(long value) {
+    int slot = this.pushHead();
+    this.items[slot] = value;
+  }
+
+  // to add a value to the end of the deque
+  void addAtTail(long value) {
+    int slot = this.pushTail();
+    this.items[slot] = value;
+  }
+
+  // to remove the value at the front of the deque and return it
+  long removeFromHead() {
+    long value = this.items[this.takeHead()];
+    this.shrinkIfSparse();
+    return value;
+  }
+
+  // to remove the value at the end of the deque and return it
+  long removeFromTail() {
+    long value = this.items[this.takeTail()];
+    this.shrinkIfSparse();
+    return value;
+  }
+
+  // to return the value the given number of places from the head
+  long get(int index) {
+    return this.items[this.checkedSlot(index)];
+  }
+
+  // to return the place from the head of the first value that passes the predicate, or
+  // -1 if none do
+  int find(LongPredicate pred) {
+    for (int index = 0; index < this.size; index++) {
+      if (pred.test(this.items[this.slot(index)])) {
+        return index;
+      }
+    }
+    return -1;
+  }
+}
+
+//to represent a deque of doubles kept in a circular double array, so values are never boxed
+class DoubleDeque extends ARingDeque {
+  double[] items;
+
+  DoubleDeque(int capacity, boolean shrinks) {
+    super(shrinks);
+    this.items = new double[ARingDeque.capacityFor(capacity)];
+  }
+
+  DoubleDeque() {
+    this(MIN_CAPACITY, false);
+  }
+
+  // to return the length of the array
+  int capacity() {
+    return this.items.length;
+  }
+
+  // to return the array
+  Object array() {
+    return this.items;
+  }
+
+  // to return a new, empty array of the given length
+  Object allocate(int capacity) {
+    return new double[capacity];
+  }
+
+  // EFFECT: replaces the array with the given one
+  void replace(Object array) {
+    this.items = (double[]) array;
+  }
+
+  // to add a value to the front of the deque
+  void addAtHead(double value) {
+    int slot = this.pushHead();
+    this.items[slot] = value;
+  }
+
+  // to add a value to the end of the deque
+  void addAtTail(double value) {
+    int slot = this.pushTail();
+    this.items[slot] = value;
+  }
+
+  // to remove the value at the front of the deque and return it
+  double removeFromHead() {
+    double value = this.items[this.takeHead()];
+    this.shrinkIfSparse();
+    return value;
+  }
+
+  // to remove the value at the end of the deque and return it
+  double removeFromTail() {
+    double value = this.items[this.takeTail()];
+    this.shrinkIfSparse();
+    return value;
+  }
+
+  // to return the value the given number of places from the head
+  double get(int index) {
+    return this.items[this.checkedSlot(index)];
+  }
+
+  // to return the place from the head of the first value that passes the predicate, or
+  // -1 if none do
+  int find(DoublePredicate pred) {
+    for (int index = 0; index < this.size; index++) {
+      if (pred.test(this.items[this.slot(index)])) {
+        return index;
+      }
+    }
+    return -1;
+  }
+}
+
+//to represent a deque that many threads can add to and remove from at both ends without
+//blocking
+//the nodes are kept in a ConcurrentLinkedDeque, which links and unlinks them with
+//compare-and-set, so a stalled thread never holds up the others
+//size is kept in a LongAdder, since counting the nodes means walking them all, and an adder
+//spreads its updates over cells instead of making every thread update one shared count;
+//it may briefly lag adds and removes that are still in progress on other threads
+//findFirst and iteration see the deque as it changes and never throw because of
+//concurrent updates
+class ConcurrentDeque<T> implements IDeque<T> {
+  ConcurrentLinkedDeque<T> items;
+  LongAdder count;
+
+  ConcurrentDeque() {
+    this.items = new ConcurrentLinkedDeque<T>();
+    this.count = new LongAdder();
+  }
+
+  // to return the amount of items in the deque
+  public int size() {
+    return (int) Math.max(0, this.count.sum());
+  }
+
+  // to add an item to the front of the deque
+  public void addAtHead(T data) {
+    if (data == null) {
+      throw new IllegalArgumentException("Given data cannot be null");
+    }
+    this.items.addFirst(data);
+    this.count.increment();
+  }
+
+  // to add an item to the end of the deque
+  public void addAtTail(T data) {
+    if (data == null) {
+      throw new IllegalArgumentException("Given data cannot be null");
+    }
+    this.items.addLast(data);
+    this.count.increment();
+  }
+
+  // to remove the item at the front of the deque and return it
+  public T removeFromHead() {
+    T data = this.items.pollFirst();
+    if (data == null) {
+      throw new RuntimeException("Cannot remove empty list");
+    }
+    this.count.decrement();
+    return data;
+  }
+
+  // to remove the item at the end of the deque and return it
+  public T removeFromTail() {
+    T data = this.items.pollLast();
+    if (data == null) {
+      throw new RuntimeException("Cannot remove empty list");
+    }
+    this.count.decrement();
+    return data;
+  }
+
+  // to return the first item that passes the predicate, or null if none do
+  public T findFirst(Predicate<T> pred) {
+    for (T data : this.items) {
+      if (pred.test(data)) {
+        return data;
+      }
+    }
+    return null;
+  }
+
+  // to return an iterator over the items from head to tail
+  public Iterator<T> iterator() {
+    return this.items.iterator();
+  }
+}
+
+//to represent a Chase-Lev work-stealing deque: the owning thread adds and removes at the
+//tail with plain reads and writes, and any other thread steals from the head, where only
+//a compare-and-set on top can race
+//items live at places top through bottom - 1 of a circular array that the owner doubles
+//when it is full; removing from an empty deque returns null instead of throwing, since
+//workers poll it in a loop
+class WorkStealingDeque<T> {
+  // sized by ARingDeque.capacityFor, so wrapping a place is a mask
+  volatile AtomicReferenceArray<T> items;
+  AtomicLong top;
+  volatile long bottom;
+
+  WorkStealingDeque(int capacity) {
+    this.items = new AtomicReferenceArray<T>(ARingDeque.capacityFor(capacity));
+    this.top = new AtomicLong();
+    this.bottom = 0;
+  }
+
+  WorkStealingDeque() {
+    this(ARingDeque.MIN_CAPACITY);
+  }
+
+  // to return the amount of items in the deque, which may be stale if other threads are
+  // stealing
+  int size() {
+    return (int) Math.max(0, this.bottom - this.top.get());
+  }
+
+  // EFFECT: adds the item to the end of the deque; only the owner may call this
+  void addAtTail(T data) {
+    long b = this.bottom;
+    long t = this.top.get();
+    AtomicReferenceArray<T> array = this.items;
+    if (b - t >= array.length()) {
+      array = this.grow(array, t, b);
+    }
+    array.set((int) (b & (array.length() - 1)), data);
+    this.bottom = b + 1;
+  }
+
+  // EFFECT: removes the item at the end of the deque and returns it, or returns null if it
+  // is empty or a thief took the last item first; only the owner may call this
+  T removeFromTail() {
+    long b = this.bottom - 1;
+    AtomicReferenceArray<T> array = this.items;
+    // the volatile write of bottom before reading top keeps a thief and the owner from
+    // both taking the last item
+    this.bottom = b;
+    long t = this.top.get();
+    if (t > b) {
+      this.bottom = b + 1;
+      return null;
+    }
+    int slot = (int) (b & (array.length() - 1));
+    T data = array.get(slot);
+    if (t < b) {
+      // thieves only read the place top, so no one else can be reading this slot
+      array.set(slot, null);
     } else {
-      return this.next.find(pred);
+      if (!this.top.compareAndSet(t, t + 1)) {
+        data = null;
+      }
+      this.bottom = b + 1;
     }
+    return data;
+  }
+
+  // EFFECT: removes the item at the front of the deque and returns it, or returns null if
+  // it is empty or another thread took that item first; any thread may call this
+  T stealFromHead() {
+    long t = this.top.get();
+    long b = this.bottom;
+    if (t >= b) {
+      return null;
+    }
+    AtomicReferenceArray<T> array = this.items;
+    T data = array.get((int) (t & (array.length() - 1)));
+    if (!this.top.compareAndSet(t, t + 1)) {
+      return null;
+    }
+    return data;
+  }
+
+  // to copy places t through b - 1 into an array twice as large and publish it
+  AtomicReferenceArray<T> grow(AtomicReferenceArray<T> array, long t, long b) {
+    AtomicReferenceArray<T> grown = new AtomicReferenceArray<T>(array.length() * 2);
+    for (long place = t; place < b; place++) {
+      grown.set((int) (place & (grown.length() - 1)),
+          array.get((int) (place & (array.length() - 1))));
+    }
+    this.items = grown;
+    return grown;
+  }
+}
+
+//to represent a thread of a WorkStealingPool, which runs tasks from the tail of its own
+//deque and, when that is empty, takes new work from the pool or steals from another worker
+class WorkStealingWorker extends Thread {
+  WorkStealingPool pool;
+  WorkStealingDeque<Runnable> tasks;
+  SplittableRandom random;
+
+  WorkStealingWorker(WorkStealingPool pool, int index) {
+    super("work-stealing-" + index);
+    this.pool = pool;
+    this.tasks = new WorkStealingDeque<Runnable>();
+    this.random = new SplittableRandom(index);
+    this.setDaemon(true);
+  }
+
+  // EFFECT: runs tasks until the pool is shut down
+  public void run() {
+    int idle = 0;
+    while (!this.pool.stopped) {
+      Runnable task = this.findTask();
+      if (task != null) {
+        idle = 0;
+        this.pool.runTask(task);
+      } else if (idle < 64) {
+        idle += 1;
+        Thread.onSpinWait();
+      } else {
+        LockSupport.parkNanos(50000);
+      }
+    }
+  }
+
+  // to return a task from this worker's tail, the pool's submissions, or another worker's
+  // head, in that order, or null if none were found
+  Runnable findTask() {
+    Runnable task = this.tasks.removeFromTail();
+    if (task != null) {
+      return task;
+    }
+    task = this.pool.submitted.items.pollFirst();
+    if (task != null) {
+      return task;
+    }
+    WorkStealingWorker[] workers = this.pool.workers;
+    int start = this.random.nextInt(workers.length);
+    for (int idx = 0; idx < workers.length && task == null; idx++) {
+      WorkStealingWorker victim = workers[(start + idx) % workers.length];
+      if (victim != this) {
+        task = victim.tasks.stealFromHead();
+      }
+    }
+    return task;
+  }
+}
+
+//to represent a small fork-join scheduler: tasks forked from a worker go on that worker's
+//own deque, so fanned-out work stays local until idle workers steal it
+class WorkStealingPool {
+  WorkStealingWorker[] workers;
+  ConcurrentDeque<Runnable> submitted;
+  AtomicInteger pending;
+  AtomicReference<Throwable> failure;
+  volatile boolean stopped;
+
+  WorkStealingPool(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Given thread count must be positive");
+    }
+    this.submitted = new ConcurrentDeque<Runnable>();
+    this.pending = new AtomicInteger();
+    this.failure = new AtomicReference<Throwable>();
+    this.stopped = false;
+    this.workers = new WorkStealingWorker[threads];
+    for (int idx = 0; idx < threads; idx++) {
+      this.workers[idx] = new WorkStealingWorker(this, idx);
+    }
+    for (WorkStealingWorker worker : this.workers) {
+      worker.start();
+    }
+  }
+
+  // EFFECT: schedules the task, on the calling worker's deque if called from a task in this
+  // pool and with the pool's submissions otherwise
+  void fork(Runnable task) {
+    if (this.stopped) {
+      throw new IllegalStateException("Pool is shut down");
+    }
+    this.pending.incrementAndGet();
+    Thread current = Thread.currentThread();
+    if (current instanceof WorkStealingWorker && ((WorkStealingWorker) current).pool == this) {
+      ((WorkStealingWorker) current).tasks.addAtTail(task);
+    } else {
+      this.submitted.addAtTail(task);
+    }
+  }
+
+  // EFFECT: runs the task, keeping the first exception or error any task throws, so the
+  // worker survives to run the tasks still on its deque
+  void runTask(Runnable task) {
+    try {
+      task.run();
+    } catch (Throwable e) {
+      this.failure.compareAndSet(null, e);
+    } finally {
+      this.pending.decrementAndGet();
+    }
+  }
+
+  // EFFECT: waits until every forked task, and every task they forked, has run, then
+  // throws if any of them failed
+  void awaitQuiescence() {
+    while (this.pending.get() > 0) {
+      LockSupport.parkNanos(100000);
+    }
+    Throwable e = this.failure.getAndSet(null);
+    if (e != null) {
+      throw new RuntimeException("A task failed", e);
+    }
+  }
+
+  // EFFECT: stops the workers once they finish their current tasks
+  void shutdown() {
+    this.stopped = true;
+  }
+}
+
+//to represent a demo task for WorkStealingPool that counts the primes in [low, high),
+//forking halves of the range until it is small; primes near the top cost more to check,
+//so the work is uneven and idle workers have to steal
+class CountPrimes implements Runnable {
+  static final int SPLIT = 2000;
+
+  WorkStealingPool pool;
+  LongAdder total;
+  int low;
+  int high;
+
+  CountPrimes(WorkStealingPool pool, LongAdder total, int low, int high) {
+    this.pool = pool;
+    this.total = total;
+    this.low = low;
+    this.high = high;
+  }
+
+  // EFFECT: adds the primes in the range to total, forking if the range is large
+  public void run() {
+    if (this.high - this.low > SPLIT) {
+      int mid = (this.low + this.high) >>> 1;
+      this.pool.fork(new CountPrimes(this.pool, this.total, mid, this.high));
+      this.pool.fork(new CountPrimes(this.pool, this.total, this.low, mid));
+    } else {
+      int count = 0;
+      for (int n = this.low; n < this.high; n++) {
+        if (isPrime(n)) {
+          count += 1;
+        }
+      }
+      this.total.add(count);
+    }
+  }
+
+  // to return whether n is prime, by trial division
+  static boolean isPrime(int n) {
+    if (n < 2) {
+      return false;
+    }
+    for (int d = 2; (long) d * d <= n; d++) {
+      if (n % d == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // EFFECT: counts the primes below the given limit (10000000 by default) on a pool of one
+  // worker per processor and prints the count and time
+  public static void main(String[] args) {
+    int limit = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+    int threads = Runtime.getRuntime().availableProcessors();
+    WorkStealingPool pool = new WorkStealingPool(threads);
+    LongAdder total = new LongAdder();
+    long start = System.nanoTime();
+    pool.fork(new CountPrimes(pool, total, 0, limit));
+    pool.awaitQuiescence();
+    long elapsed = System.nanoTime() - start;
+    pool.shutdown();
+    System.out.println(total.sum() + " primes below " + limit + " on " + threads
+        + " workers in " + (elapsed / 1000000) + " ms");
   }
 }
 
@@ -362,6 +1307,496 @@ class ExamplesDeque {
         && t.checkExpect(this.four.test("pwd"), false);
   }
 
+  // to test that size is kept by add and remove in Deque
+  void testSizeCount(Tester t) {
+    this.initTestConditions();
+    this.deque2.addAtHead("ghi");
+    this.deque2.addAtTail("jkl");
+    t.checkExpect(this.deque2.size(), 6);
+    this.deque2.removeFromHead();
+    t.checkExpect(this.deque2.size(), 5);
+    this.deque3.removeFromTail();
+    this.deque3.removeFromTail();
+    this.deque3.removeFromTail();
+    t.checkExpect(this.deque3.size(), 0);
+    t.checkException(new RuntimeException("Cannot remove empty list"), this.deque3,
+        "removeFromTail");
+    t.checkExpect(this.deque3.size(), 0);
+  }
+
+  // to test size and find in Node on a deque too long to recur through
+  void testLongDeque(Tester t) {
+    this.initTestConditions();
+    Deque<String> deque = new Deque<String>();
+    for (int idx = 0; idx < 1000000; idx++) {
+      deque.addAtTail("abc");
+    }
+    deque.addAtTail("hello");
+    t.checkExpect(deque.size(), 1000001);
+    t.checkExpect(deque.header.next.size(), 1000001);
+    t.checkExpect(deque.findFirst(h), "hello");
+    t.checkExpect(deque.find(b).isSentinel(), true);
+  }
+
+  // to test isSentinel in ANode
+  boolean testIsSentinel(Tester t) {
+    this.initTestConditions();
+    return t.checkExpect(this.sentinel1.isSentinel(), true)
+        && t.checkExpect(this.abc.isSentinel(), false);
+  }
+
+  // to test iterating over a Deque with DequeIterator
+  void testDequeIterator(Tester t) {
+    this.initTestConditions();
+    ArrayList<String> seen = new ArrayList<String>();
+    for (String data : this.deque2) {
+      seen.add(data);
+    }
+    t.checkExpect(seen, new ArrayList<String>(Arrays.asList("abc", "bcd", "cde", "def")));
+    Iterator<String> empty = this.deque1.iterator();
+    t.checkExpect(empty.hasNext(), false);
+    t.checkException(new NoSuchElementException("No more items in deque"), empty, "next");
+  }
+
+  // to test iterating over a RingDeque with RingIterator
+  void testRingIterator(Tester t) {
+    RingDeque<String> ring = new RingDeque<String>();
+    ring.addAtTail("hello");
+    ring.addAtHead("pwd");
+    ring.addAtTail("span");
+    ArrayList<String> seen = new ArrayList<String>();
+    for (String data : ring) {
+      seen.add(data);
+    }
+    t.checkExpect(seen, new ArrayList<String>(Arrays.asList("pwd", "hello", "span")));
+    Iterator<String> iter = new RingDeque<String>().iterator();
+    t.checkExpect(iter.hasNext(), false);
+    t.checkException(new NoSuchElementException("No more items in deque"), iter, "next");
+  }
+
+  // to test the constructor, add, remove and get in IntDeque
+  void testIntDeque(Tester t) {
+    IntDeque deque = new IntDeque();
+    t.checkExpect(deque.size(), 0);
+    deque.addAtTail(2);
+    deque.addAtHead(1);
+    deque.addAtTail(3);
+    t.checkExpect(deque.size(), 3);
+    t.checkExpect(deque.head, 15);
+    t.checkExpect(deque.get(0), 1);
+    t.checkExpect(deque.get(2), 3);
+    t.checkExpect(deque.removeFromHead(), 1);
+    t.checkExpect(deque.removeFromTail(), 3);
+    t.checkExpect(deque.removeFromTail(), 2);
+    t.checkException(new RuntimeException("Cannot remove empty list"), deque, "removeFromHead");
+    t.checkException(new RuntimeException("Cannot remove empty list"), deque, "removeFromTail");
+    t.checkException(new IllegalArgumentException("Given index is out of bounds"), deque, "get",
+        0);
+    t.checkConstructorException(new IllegalArgumentException("Given capacity is out of range"),
+        "IntDeque", 0, true);
+    t.checkExpect(new IntDeque(100, false).items.length, 128);
+  }
+
+  // to test resize, shrinkIfSparse and find in IntDeque
+  void testIntDequeResize(Tester t) {
+    IntDeque deque = new IntDeque(16, true);
+    for (int idx = 0; idx < 1000; idx++) {
+      deque.addAtHead(idx);
+    }
+    t.checkExpect(deque.items.length, 1024);
+    t.checkExpect(deque.get(0), 999);
+    t.checkExpect(deque.find(value -> value == 500), 499);
+    t.checkExpect(deque.find(value -> value < 0), -1);
+    for (int idx = 0; idx < 990; idx++) {
+      deque.removeFromTail();
+    }
+    t.checkExpect(deque.items.length, 32);
+    t.checkExpect(deque.get(9), 990);
+  }
+
+  // to test add, remove, get and find in LongDeque
+  void testLongDequeOps(Tester t) {
+    LongDeque deque = new LongDeque(4, false);
+    for (long stamp = 0; stamp < 20; stamp++) {
+      deque.addAtTail(stamp * 1000000000000L);
+    }
+    t.checkExpect(deque.items.length, 32);
+    t.checkExpect(deque.get(19), 19000000000000L);
+    t.checkExpect(deque.find(stamp -> stamp > 5000000000000L), 6);
+    t.checkExpect(deque.find(stamp -> stamp < 0), -1);
+    t.checkExpect(deque.removeFromHead(), 0L);
+    t.checkExpect(deque.removeFromTail(), 19000000000000L);
+    t.checkExpect(deque.size(), 18);
+    t.checkException(new RuntimeException("Cannot remove empty list"), new LongDeque(),
+        "removeFromHead");
+  }
+
+  // to test add, remove, get and find in DoubleDeque
+  void testDoubleDeque(Tester t) {
+    DoubleDeque deque = new DoubleDeque();
+    deque.addAtHead(0.5);
+    deque.addAtHead(0.25);
+    deque.addAtTail(0.75);
+    t.checkInexact(deque.get(0), 0.25, 0.0001);
+    t.checkExpect(deque.find(value -> value > 0.6), 2);
+    t.checkExpect(deque.find(value -> value > 1.0), -1);
+    t.checkInexact(deque.removeFromTail(), 0.75, 0.0001);
+    t.checkInexact(deque.removeFromHead(), 0.25, 0.0001);
+    t.checkExpect(deque.size(), 1);
+    t.checkException(new RuntimeException("Cannot remove empty list"), new DoubleDeque(),
+        "removeFromTail");
+  }
+
+  // to start the given threads and wait for all of them to finish
+  void runAll(Thread... threads) {
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  // to test add, remove, findFirst and iterator in ConcurrentDeque
+  void testConcurrentDeque(Tester t) {
+    this.initTestConditions();
+    ConcurrentDeque<String> deque = new ConcurrentDeque<String>();
+    deque.addAtTail("hello");
+    deque.addAtHead("pwd");
+    deque.addAtTail("span");
+    t.checkExpect(deque.size(), 3);
+    t.checkExpect(deque.findFirst(four), "span");
+    t.checkExpect(deque.findFirst(ten), null);
+    ArrayList<String> seen = new ArrayList<String>();
+    for (String data : deque) {
+      seen.add(data);
+    }
+    t.checkExpect(seen, new ArrayList<String>(Arrays.asList("pwd", "hello", "span")));
+    t.checkExpect(deque.removeFromHead(), "pwd");
+    t.checkExpect(deque.removeFromTail(), "span");
+    t.checkExpect(deque.removeFromTail(), "hello");
+    t.checkExpect(deque.size(), 0);
+    t.checkException(new RuntimeException("Cannot remove empty list"), deque, "removeFromHead");
+    t.checkException(new RuntimeException("Cannot remove empty list"), deque, "removeFromTail");
+  }
+
+  // to test ConcurrentDeque with producers and consumers at both ends at once
+  void testConcurrentDequeThreads(Tester t) {
+    ConcurrentDeque<Integer> deque = new ConcurrentDeque<Integer>();
+    AtomicInteger removed = new AtomicInteger();
+    AtomicInteger removedSum = new AtomicInteger();
+    Thread[] threads = new Thread[8];
+    for (int idx = 0; idx < 4; idx++) {
+      boolean atHead = idx % 2 == 0;
+      threads[idx] = new Thread(() -> {
+        for (int value = 1; value <= 10000; value++) {
+          if (atHead) {
+            deque.addAtHead(value);
+          } else {
+            deque.addAtTail(value);
+          }
+        }
+      });
+      threads[idx + 4] = new Thread(() -> {
+        for (int tries = 0; tries < 10000; tries++) {
+          try {
+            int value = atHead ? deque.removeFromHead() : deque.removeFromTail();
+            removed.incrementAndGet();
+            removedSum.addAndGet(value);
+          } catch (RuntimeException e) {
+            Thread.yield();
+          }
+        }
+      });
+    }
+    this.runAll(threads);
+    int leftSum = 0;
+    int leftCount = 0;
+    for (int value : deque) {
+      leftSum += value;
+      leftCount += 1;
+    }
+    t.checkExpect(deque.size(), leftCount);
+    t.checkExpect(deque.size() + removed.get(), 40000);
+    t.checkExpect(leftSum + removedSum.get(), 4 * 50005000);
+  }
+
+  // to test addAtTail, removeFromTail, stealFromHead and grow in WorkStealingDeque
+  void testWorkStealingDeque(Tester t) {
+    WorkStealingDeque<String> deque = new WorkStealingDeque<String>();
+    t.checkExpect(deque.removeFromTail(), null);
+    t.checkExpect(deque.stealFromHead(), null);
+    deque.addAtTail("pwd");
+    deque.addAtTail("hello");
+    deque.addAtTail("span");
+    t.checkExpect(deque.size(), 3);
+    t.checkExpect(deque.stealFromHead(), "pwd");
+    t.checkExpect(deque.removeFromTail(), "span");
+    t.checkExpect(deque.items.get(2), null);
+    t.checkExpect(deque.removeFromTail(), "hello");
+    t.checkExpect(deque.removeFromTail(), null);
+    t.checkExpect(deque.size(), 0);
+    for (int idx = 0; idx < 40; idx++) {
+      deque.addAtTail("abc" + idx);
+      deque.stealFromHead();
+      deque.addAtTail("def" + idx);
+    }
+    t.checkExpect(deque.items.length(), 64);
+    t.checkExpect(deque.size(), 40);
+    t.checkExpect(deque.stealFromHead(), "abc20");
+    t.checkExpect(deque.removeFromTail(), "def39");
+    t.checkConstructorException(new IllegalArgumentException("Given capacity is out of range"),
+        "WorkStealingDeque", 0);
+  }
+
+  // to test that an owner and thieves racing on a WorkStealingDeque take each item once
+  void testWorkStealingDequeThreads(Tester t) {
+    WorkStealingDeque<Integer> deque = new WorkStealingDeque<Integer>(2);
+    AtomicInteger taken = new AtomicInteger();
+    AtomicLong takenSum = new AtomicLong();
+    AtomicInteger done = new AtomicInteger();
+    Thread[] threads = new Thread[4];
+    threads[0] = new Thread(() -> {
+      for (int value = 1; value <= 100000; value++) {
+        deque.addAtTail(value);
+        if (value % 3 == 0) {
+          Integer data = deque.removeFromTail();
+          if (data != null) {
+            taken.incrementAndGet();
+            takenSum.addAndGet(data);
+          }
+        }
+      }
+      done.set(1);
+    });
+    for (int idx = 1; idx < threads.length; idx++) {
+      threads[idx] = new Thread(() -> {
+        while (done.get() == 0 || deque.size() > 0) {
+          Integer data = deque.stealFromHead();
+          if (data != null) {
+            taken.incrementAndGet();
+            takenSum.addAndGet(data);
+          }
+        }
+      });
+    }
+    this.runAll(threads);
+    t.checkExpect(taken.get(), 100000);
+    t.checkExpect(takenSum.get(), 5000050000L);
+  }
+
+  // to test fork, runTask and awaitQuiescence in WorkStealingPool with CountPrimes
+  void testWorkStealingPool(Tester t) {
+    WorkStealingPool pool = new WorkStealingPool(4);
+    LongAdder total = new LongAdder();
+    pool.fork(new CountPrimes(pool, total, 0, 100000));
+    pool.awaitQuiescence();
+    t.checkExpect(total.sum(), 9592L);
+    pool.fork(() -> {
+      throw new IllegalStateException("bad task");
+    });
+    t.checkException(new RuntimeException("A task failed",
+        new IllegalStateException("bad task")), pool, "awaitQuiescence");
+    pool.shutdown();
+    t.checkException(new IllegalStateException("Pool is shut down"), pool, "fork",
+        new CountPrimes(pool, total, 0, 10));
+    t.checkConstructorException(
+        new IllegalArgumentException("Given thread count must be positive"),
+        "WorkStealingPool", 0);
+  }
+
+  // to test that a WorkStealingPool worker survives a task that throws an error and still
+  // runs the tasks that task forked
+  void testWorkStealingPoolError(Tester t) {
+    WorkStealingPool pool = new WorkStealingPool(1);
+    LongAdder total = new LongAdder();
+    pool.fork(() -> {
+      pool.fork(new CountPrimes(pool, total, 0, 100));
+      throw new StackOverflowError("too deep");
+    });
+    t.checkException(new RuntimeException("A task failed", new StackOverflowError("too deep")),
+        pool, "awaitQuiescence");
+    t.checkExpect(total.sum(), 25L);
+    t.checkExpect(pool.workers[0].isAlive(), true);
+    pool.shutdown();
+  }
+
+  // to test isPrime in CountPrimes
+  boolean testIsPrime(Tester t) {
+    return t.checkExpect(CountPrimes.isPrime(1), false)
+        && t.checkExpect(CountPrimes.isPrime(2), true)
+        && t.checkExpect(CountPrimes.isPrime(91), false)
+        && t.checkExpect(CountPrimes.isPrime(2147483647), true);
+  }
+
+  // to test that the count in ConcurrentDeque matches its contents after threads add and
+  // remove at both ends
+  void testConcurrentDequeCount(Tester t) {
+    ConcurrentDeque<Integer> deque = new ConcurrentDeque<Integer>();
+    Thread[] threads = new Thread[8];
+    for (int idx = 0; idx < threads.length; idx++) {
+      int id = idx;
+      threads[idx] = new Thread(() -> {
+        for (int value = 0; value < 5000; value++) {
+          deque.addAtHead(id);
+          deque.addAtTail(id);
+          if (value % 2 == 0) {
+            if (id % 2 == 0) {
+              deque.removeFromHead();
+            } else {
+              deque.removeFromTail();
+            }
+          }
+        }
+      });
+    }
+    this.runAll(threads);
+    int contents = 0;
+    for (int value : deque) {
+      contents += 1;
+    }
+    t.checkExpect(contents, 8 * (10000 - 2500));
+    t.checkExpect(deque.size(), contents);
+  }
+
+  // to test findFirst in Deque and dataOrNull in ANode
+  boolean testFindFirst(Tester t) {
+    this.initTestConditions();
+    return t.checkExpect(this.deque1.findFirst(b), null)
+        && t.checkExpect(this.deque2.findFirst(b), "bcd")
+        && t.checkExpect(this.deque3.findFirst(four), "span")
+        && t.checkExpect(this.sentinel1.dataOrNull(), null)
+        && t.checkExpect(this.abc.dataOrNull(), "abc");
+  }
+
+  // to test capacityFor, pushHead, pushTail, takeHead and takeTail in ARingDeque
+  void testARingDeque(Tester t) {
+    t.checkExpect(ARingDeque.capacityFor(1), ARingDeque.MIN_CAPACITY);
+    t.checkExpect(ARingDeque.capacityFor(17), 32);
+    t.checkExpect(ARingDeque.capacityFor(1 << 30), 1 << 30);
+    IntDeque deque = new IntDeque();
+    t.checkExpect(deque.pushHead(), 15);
+    t.checkExpect(deque.pushTail(), 0);
+    t.checkExpect(deque.size(), 2);
+    t.checkExpect(deque.takeTail(), 0);
+    t.checkExpect(deque.takeHead(), 15);
+    t.checkExpect(deque.head, 0);
+    t.checkException(new RuntimeException("Cannot remove empty list"), deque, "takeHead");
+    t.checkException(new IllegalArgumentException("Given index is out of bounds"), deque,
+        "checkedSlot", 0);
+  }
+
+  // to test the constructors and size in RingDeque
+  void testRingDequeConstructor(Tester t) {
+    RingDeque<String> ring = new RingDeque<String>();
+    t.checkExpect(ring.size(), 0);
+    t.checkExpect(ring.items.length, RingDeque.MIN_CAPACITY);
+    t.checkExpect(new RingDeque<String>(100, true).items.length, 128);
+    t.checkExpect(new RingDeque<String>(64, true).items.length, 64);
+    t.checkExpect(new RingDeque<String>(1, true).items.length, RingDeque.MIN_CAPACITY);
+    t.checkConstructorException(new IllegalArgumentException("Given capacity is out of range"),
+        "RingDeque", 0, false);
+  }
+
+  // to test addAtHead, addAtTail, get and slot in RingDeque
+  void testRingDequeAdd(Tester t) {
+    RingDeque<String> ring = new RingDeque<String>();
+    ring.addAtTail("bcd");
+    ring.addAtHead("abc");
+    ring.addAtTail("cde");
+    t.checkExpect(ring.size(), 3);
+    t.checkExpect(ring.head, 15);
+    t.checkExpect(ring.slot(1), 0);
+    t.checkExpect(ring.get(0), "abc");
+    t.checkExpect(ring.get(2), "cde");
+    t.checkException(new IllegalArgumentException("Given index is out of bounds"), ring, "get",
+        3);
+  }
+
+  // to test removeFromHead and removeFromTail in RingDeque
+  void testRingDequeRemove(Tester t) {
+    RingDeque<String> ring = new RingDeque<String>();
+    ring.addAtHead("bcd");
+    ring.addAtHead("abc");
+    ring.addAtTail("cde");
+    t.checkExpect(ring.removeFromHead(), "abc");
+    t.checkExpect(ring.removeFromTail(), "cde");
+    t.checkExpect(ring.removeFromTail(), "bcd");
+    t.checkExpect(ring.size(), 0);
+    t.checkExpect(ring.items, new Object[RingDeque.MIN_CAPACITY]);
+    t.checkException(new RuntimeException("Cannot remove empty list"), ring, "removeFromHead");
+    t.checkException(new RuntimeException("Cannot remove empty list"), ring, "removeFromTail");
+  }
+
+  // to test resize and shrinkIfSparse in RingDeque
+  void testRingDequeResize(Tester t) {
+    RingDeque<Integer> ring = new RingDeque<Integer>(16, true);
+    for (int idx = 0; idx < 100; idx++) {
+      if (idx % 2 == 0) {
+        ring.addAtTail(idx);
+      } else {
+        ring.addAtHead(idx);
+      }
+    }
+    t.checkExpect(ring.items.length, 128);
+    t.checkExpect(ring.get(0), 99);
+    t.checkExpect(ring.get(99), 98);
+    for (int idx = 0; idx < 90; idx++) {
+      ring.removeFromHead();
+    }
+    t.checkExpect(ring.size(), 10);
+    t.checkExpect(ring.items.length, 32);
+    t.checkExpect(ring.get(0), 80);
+    for (int idx = 0; idx < 10; idx++) {
+      ring.removeFromTail();
+    }
+    t.checkExpect(ring.items.length, RingDeque.MIN_CAPACITY);
+
+    RingDeque<Integer> growing = new RingDeque<Integer>();
+    for (int idx = 0; idx < 100; idx++) {
+      growing.addAtTail(idx);
+    }
+    for (int idx = 0; idx < 100; idx++) {
+      growing.removeFromHead();
+    }
+    t.checkExpect(growing.items.length, 128);
+  }
+
+  // to test find and findFirst in RingDeque
+  void testRingDequeFind(Tester t) {
+    this.initTestConditions();
+    RingDeque<String> ring = new RingDeque<String>();
+    ring.addAtTail("pwd");
+    ring.addAtTail("hello");
+    ring.addAtTail("span");
+    t.checkExpect(ring.find(h), 1);
+    t.checkExpect(ring.find(four), 2);
+    t.checkExpect(ring.find(ten), -1);
+    t.checkExpect(ring.findFirst(three), "pwd");
+    t.checkExpect(ring.findFirst(b), null);
+  }
+
+  // to test that both deques work the same through IDeque
+  void testIDeque(Tester t) {
+    this.initTestConditions();
+    IDeque<String> linked = new Deque<String>();
+    IDeque<String> ring = new RingDeque<String>();
+    for (IDeque<String> deque : new ArrayList<IDeque<String>>(Arrays.asList(linked, ring))) {
+      deque.addAtTail("hello");
+      deque.addAtHead("pwd");
+      deque.addAtTail("span");
+      t.checkExpect(deque.size(), 3);
+      t.checkExpect(deque.findFirst(four), "span");
+      t.checkExpect(deque.removeFromHead(), "pwd");
+      t.checkExpect(deque.removeFromTail(), "span");
+      t.checkExpect(deque.size(), 1);
+    }
+  }
+
   // to test find in Deque
   boolean testFind(Tester t) {
     this.initTestConditions();
@@ -2,14 +2,70 @@ import tester.*;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.SplittableRandom;
+import java.util.zip.CRC32;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+//to represent a coder built from a letters/frequencies model, so the backend can be
+//chosen per dataset
+interface IEntropyCoder {
+  // encodes the given string into packed bits
+  BitBuffer encodePacked(String s);
+
+  // decodes the given packed bits into letters
+  String decode(BitBuffer encoded);
+
+  // encodes the given bytes, each as the symbol from 0 to 255 with the same value
+  BitBuffer encodeBytes(byte[] bytes);
+
+  // decodes the given packed bits into bytes, for a coder over byte symbols
+  byte[] decodeBytes(BitBuffer encoded);
+}
 
 //to represent a huffman data structure
-class Huffman {
+class Huffman implements IEntropyCoder {
+  // each letter is a single unicode code point, which is also its symbol number
   ArrayList<String> letters;
   ArrayList<Integer> freq;
-  // a matrix containing the code for each letter
-  ArrayList<ArrayList<String>> code;
+  // whether each symbol is a letter, indexed by symbol
+  boolean[] isLetter;
+  // the code for each letter, indexed by symbol: the bits of the code (first bit
+  // highest) and how many bits long it is, 0 if it is not a letter
+  long[] codeBits;
+  int[] codeLengths;
   ArrayList<Tree> trees;
+  // the table decode reads codes with, built from the single tree on first use
+  DecodeTable decodeTable;
+  // told about every build, encode and decode, or null (the default) to skip even
+  // reading the clock
+  ICodecCounters counters;
 
   Huffman(ArrayList<String> letters, ArrayList<Integer> freq) {
     if (letters.size() != freq.size()) {
@@ -21,7 +77,48 @@ class Huffman {
     this.letters = letters;
     this.freq = freq;
     this.trees = new ArrayList<Tree>();
-    this.code = new ArrayList<ArrayList<String>>();
+    this.codeBits = new long[0];
+    this.codeLengths = new int[0];
+    this.isLetter = new boolean[this.maxSymbol() + 1];
+    for (String letter : letters) {
+      this.isLetter[letter.codePointAt(0)] = true;
+    }
+  }
+
+  // to make a huffman over int symbols, such as bytes (0 to 255) or code points
+  Huffman(int[] symbols, int[] freq) {
+    this(Huffman.toLetters(symbols), Huffman.toFreq(freq));
+  }
+
+  // returns the letter for each of the given symbols
+  static ArrayList<String> toLetters(int[] symbols) {
+    ArrayList<String> letters = new ArrayList<String>();
+    for (int symbol : symbols) {
+      if (symbol < 0 || symbol > Character.MAX_CODE_POINT) {
+        throw new IllegalArgumentException("Symbols must be between 0 and "
+            + Character.MAX_CODE_POINT);
+      }
+      letters.add(new String(Character.toChars(symbol)));
+    }
+    return letters;
+  }
+
+  // returns the given frequencies as a list
+  static ArrayList<Integer> toFreq(int[] freq) {
+    ArrayList<Integer> list = new ArrayList<Integer>();
+    for (int count : freq) {
+      list.add(count);
+    }
+    return list;
+  }
+
+  // returns the largest symbol of all the letters
+  int maxSymbol() {
+    int maxSymbol = 0;
+    for (String letter : this.letters) {
+      maxSymbol = Math.max(maxSymbol, letter.codePointAt(0));
+    }
+    return maxSymbol;
   }
 
   // EFFECT: converts all of the letters and frequencies into leaves
@@ -32,267 +129,3615 @@ class Huffman {
     this.sort();
   }
 
-  // EFFECT: initializes the code matrix by adding the letters to the first column
+  // EFFECT: initializes the code table with room for every letter, and fills it in
+  // if the trees are already merged
   void initCode() {
-    for (int idx = 0; idx < this.letters.size(); idx++) {
-      this.code.add(new ArrayList<String>(Arrays.asList(this.letters.get(idx))));
-    }
+    this.codeBits = new long[this.maxSymbol() + 1];
+    this.codeLengths = new int[this.maxSymbol() + 1];
+    this.addAllCodes();
   }
 
   // EFFECT: sorts the tree matrix from least frequency to highest
+  // (a stable sort, radix by frequency for large alphabets, so they don't stall here)
   void sort() {
-    new ArrayUtils().sort(this.trees, new TreeCompare());
+    new ArrayUtils().sortByKey(this.trees, tree -> tree.freq);
   }
 
-  // EFFECT: merges the two lowest trees into a node and adds their corresponding
-  // code to the code matrix
+  // EFFECT: merges the two lowest trees into a node, and fills in the code table
+  // once only one tree is left
   void mergeTrees() {
     this.trees.add(new Node(this.trees.get(0), this.trees.get(1)));
-    this.addCode();
     this.trees.remove(0);
     this.trees.remove(0);
     this.sort();
-
+    this.addAllCodes();
   }
 
-  // EFFECT: adds the code to the matrix for the corresponding letter
-  void addCode() {
-    for (int idx = 0; idx < this.code.size(); idx++) {
-      if (this.trees.get(this.trees.size() - 1).containsLeft(this.code.get(idx).get(0))) {
-        this.code.get(idx).add(1, "false");
-      }
-      if (this.trees.get(this.trees.size() - 1).containsRight(this.code.get(idx).get(0))) {
-        this.code.get(idx).add(1, "true");
+  // EFFECT: merges all trees until there is a single tree, then fills in the code
+  // table from that tree
+  // the trees must already be sorted, so every merged node is at least as heavy as
+  // the one before it; keeping the merged nodes in a second queue means the two
+  // lightest trees are always at the front of one of the two queues, and the whole
+  // merge is linear instead of a re-sort per step
+  void mergeAll() {
+    if (this.trees.size() > 1) {
+      MergeQueue queue = new MergeQueue(this.trees);
+      while (queue.size() > 1) {
+        Tree lightest = queue.poll();
+        queue.add(new Node(lightest, queue.poll()));
       }
+      this.trees = new ArrayList<Tree>(Arrays.asList(queue.poll()));
     }
+    this.addAllCodes();
   }
 
-  // EFFECT: merges all trees until there is a single tree
-  void mergeAll() {
-    for (int idx = this.trees.size(); idx > 1; idx--) {
-      this.mergeTrees();
+  // EFFECT: sets the code of every letter in the code table to its path in the
+  // single remaining tree
+  void addAllCodes() {
+    if (this.trees.size() == 1 && this.codeLengths.length > 0) {
+      this.trees.get(0).addCodes(this.codeBits, this.codeLengths, 0, 0);
     }
   }
 
   // throws an exception if the given string is not part of the list of letters
   boolean charInList(String s) {
-    for (int idx = 0; idx < s.length(); idx++) {
-      if (this.letters.indexOf(s.substring(idx, idx + 1)) == -1) {
-        throw new IllegalArgumentException(
-            "Tried to encode " + s.charAt(idx) + " but that is not part of the language.");
-      }
+    for (int idx = 0; idx < s.length(); idx += Character.charCount(s.codePointAt(idx))) {
+      this.checkSymbol(s.codePointAt(idx));
     }
     return true;
   }
 
-  // encodes the given string based on the code matrix
+  // throws an exception if the given symbol is not one of the letters
+  void checkSymbol(int symbol) {
+    if (symbol < 0 || symbol >= this.isLetter.length || !this.isLetter[symbol]) {
+      throw new IllegalArgumentException("Tried to encode "
+          + (Character.isValidCodePoint(symbol) ? new String(Character.toChars(symbol)) : symbol)
+          + " but that is not part of the language.");
+    }
+  }
+
+  // EFFECT: sets the counters told about every build, encode and decode, or turns
+  // counting off if given null
+  void setCounters(ICodecCounters counters) {
+    this.counters = counters;
+  }
+
+  // returns the current time if counting is on, so a disabled huffman never reads the
+  // clock
+  long startTimer() {
+    return this.counters == null ? 0 : System.nanoTime();
+  }
+
+  // EFFECT: tells the counters about an encode of the given number of symbols that
+  // started at the given time
+  void countEncode(long symbols, BitBuffer encoded, long start) {
+    if (this.counters != null) {
+      this.counters.encoded(symbols, encoded.size(), System.nanoTime() - start);
+    }
+  }
+
+  // EFFECT: tells the counters about a decode of the given number of symbols that
+  // started at the given time
+  void countDecode(long symbols, long start) {
+    if (this.counters != null) {
+      this.counters.decoded(symbols, System.nanoTime() - start);
+    }
+  }
+
+  // returns the shannon entropy of the frequencies, the fewest bits per letter any
+  // code could average on them
+  double entropy() {
+    long total = 0;
+    for (int count : this.freq) {
+      total += count;
+    }
+    double entropy = 0;
+    for (int count : this.freq) {
+      if (count > 0) {
+        double p = (double) count / total;
+        entropy -= p * Math.log(p) / Math.log(2);
+      }
+    }
+    return entropy;
+  }
+
+  // returns the length of the longest code
+  int maxDepth() {
+    this.build();
+    int maxDepth = 0;
+    for (int length : this.codeLengths) {
+      maxDepth = Math.max(maxDepth, length);
+    }
+    return maxDepth;
+  }
+
+  // encodes the given string based on the code table
   ArrayList<Boolean> encode(String s) {
+    return this.encodePacked(s).toBooleanList();
+  }
+
+  // EFFECT: creates and merges the trees and fills in the code table, if that has
+  // not been done yet
+  // synchronized so threads sharing a huffman never build it twice at once; for a hot
+  // path, share an immutable CanonicalCode instead
+  synchronized void build() {
+    if (this.trees.size() == 1 && this.codeLengths.length > 0) {
+      return;
+    }
+    long start = this.startTimer();
     if (this.trees.size() == 0) {
       this.createLeaves();
     }
-    if (this.code.size() == 0) {
+    if (this.codeLengths.length == 0) {
       this.initCode();
     }
     if (this.trees.size() > 1) {
       this.mergeAll();
     }
-    ArrayList<Boolean> encodedMessage = new ArrayList<Boolean>();
+    if (this.counters != null) {
+      this.counters.built(System.nanoTime() - start);
+    }
+  }
+
+  // encodes the given string based on the code table into packed bits
+  public BitBuffer encodePacked(String s) {
+    this.build();
+    long start = this.startTimer();
+    BitBuffer encodedMessage = new BitBuffer();
     if (this.charInList(s)) {
       for (int stringIdx = 0; stringIdx < s.length(); stringIdx++) {
-        String letter = s.substring(stringIdx, stringIdx + 1);
-        for (int codeRow = 0; codeRow < this.code.size(); codeRow++) {
-          ArrayList<String> selectedRow = this.code.get(codeRow);
-          if (selectedRow.get(0).equals(letter)) {
-            for (int codeCol = 1; codeCol < selectedRow.size(); codeCol++) {
-              if (selectedRow.get(codeCol).equals("true")) {
-                encodedMessage.add(true);
-              }
-              else {
-                encodedMessage.add(false);
-              }
-            }
-          }
-        }
+        int letter = s.codePointAt(stringIdx);
+        encodedMessage.append(this.codeBits[letter], this.codeLengths[letter]);
+        stringIdx += Character.charCount(letter) - 1;
       }
     }
+    if (this.counters != null) {
+      this.countEncode(s.codePointCount(0, s.length()), encodedMessage, start);
+    }
+    return encodedMessage;
+  }
+
+  // encodes the given symbols based on the code table into packed bits
+  BitBuffer encodeSymbols(int[] symbols) {
+    this.build();
+    long start = this.startTimer();
+    BitBuffer encodedMessage = new BitBuffer();
+    for (int symbol : symbols) {
+      this.checkSymbol(symbol);
+      encodedMessage.append(this.codeBits[symbol], this.codeLengths[symbol]);
+    }
+    this.countEncode(symbols.length, encodedMessage, start);
+    return encodedMessage;
+  }
+
+  // encodes the given bytes, each as the symbol from 0 to 255 with the same value,
+  // into packed bits
+  public BitBuffer encodeBytes(byte[] bytes) {
+    this.build();
+    long start = this.startTimer();
+    BitBuffer encodedMessage = new BitBuffer();
+    for (byte b : bytes) {
+      this.checkSymbol(b & 0xFF);
+      encodedMessage.append(this.codeBits[b & 0xFF], this.codeLengths[b & 0xFF]);
+    }
+    this.countEncode(bytes.length, encodedMessage, start);
     return encodedMessage;
   }
 
+  // returns the number of bits the codes of the bytes from in's position to its limit
+  // take, putting the packed bits straight into out (see DirectCoding)
+  long encodeBytes(ByteBuffer in, ByteBuffer out) {
+    this.build();
+    long start = this.startTimer();
+    int symbols = in.remaining();
+    long bitCount = DirectCoding.encode(this.codeBits, this.codeLengths, in, out);
+    if (this.counters != null) {
+      this.counters.encoded(symbols, bitCount, System.nanoTime() - start);
+    }
+    return bitCount;
+  }
+
+  // returns the number of bytes decoded from the first bitCount bits at in's position,
+  // putting them straight into out (see DirectCoding)
+  int decodeBytes(ByteBuffer in, long bitCount, ByteBuffer out) {
+    DecodeTable table = this.table();
+    long start = this.startTimer();
+    int count = DirectCoding.decode(table, in, bitCount, out);
+    this.countDecode(count, start);
+    return count;
+  }
+
   // decodes the given boolean list based on the single tree in tree list
   String decode(ArrayList<Boolean> encoded) {
+    return this.decode(new BitBuffer(encoded));
+  }
+
+  // decodes the given packed bits based on the single tree in tree list, ending with
+  // "?" if the last code is cut off
+  public String decode(BitBuffer encoded) {
+    DecodeTable table = this.table();
+    long start = this.startTimer();
+    String decoded = table.decode(encoded);
+    if (this.counters != null) {
+      this.countDecode(decoded.codePointCount(0, decoded.length()), start);
+    }
+    return decoded;
+  }
+
+  // decodes the given packed bits into symbols
+  int[] decodeSymbols(BitBuffer encoded) {
+    DecodeTable table = this.table();
+    long start = this.startTimer();
+    int[] decoded = table.decodeSymbols(encoded, 0, encoded.size());
+    this.countDecode(decoded.length, start);
+    return decoded;
+  }
+
+  // decodes the given packed bits into bytes, for a huffman over byte symbols
+  public byte[] decodeBytes(BitBuffer encoded) {
+    DecodeTable table = this.table();
+    long start = this.startTimer();
+    byte[] decoded = table.decodeBytes(encoded, 0, encoded.size());
+    this.countDecode(decoded.length, start);
+    return decoded;
+  }
+
+  // returns the decode table, merging the trees and building it if needed
+  synchronized DecodeTable table() {
+    if (this.decodeTable != null && this.trees.size() == 1) {
+      return this.decodeTable;
+    }
+    long start = this.startTimer();
     if (this.trees.size() == 0) {
       this.createLeaves();
     }
     if (this.trees.size() > 1) {
       this.mergeAll();
     }
-    String decodedMessage = "";
-    int idx = 0;
-    while (idx < encoded.size()) {
-      String letterAndNum = this.trees.get(0).traverse(encoded, idx);
-      decodedMessage += letterAndNum.substring(0, 1);
-      idx = Integer.parseInt(letterAndNum.substring(1));
+    if (this.decodeTable == null) {
+      this.decodeTable = new DecodeTable(this.trees.get(0),
+          Math.min(this.trees.get(0).height(), DecodeTable.MAX_TABLE_BITS));
+    }
+    if (this.counters != null) {
+      this.counters.built(System.nanoTime() - start);
     }
-    return decodedMessage;
+    return this.decodeTable;
   }
-}
 
-//to represent a tree data struture
-abstract class Tree {
-  int freq;
+  // returns the canonical code with the same code lengths as this huffman's codes
+  CanonicalCode canonicalCode() {
+    this.build();
+    return new CanonicalCode(this.codeLengths);
+  }
 
-  Tree(int freq) {
-    this.freq = freq;
+  // returns the best canonical code for these frequencies with no code longer than
+  // maxLength bits, so decoding can always read a whole code in one table hit
+  CanonicalCode canonicalCode(int maxLength) {
+    int[] symbols = new int[this.letters.size()];
+    long[] weights = new long[this.letters.size()];
+    for (int idx = 0; idx < symbols.length; idx++) {
+      symbols[idx] = this.letters.get(idx).codePointAt(0);
+      weights[idx] = this.freq.get(idx);
+    }
+    return new CanonicalCode(new PackageMerge(symbols, weights, maxLength).codeLengths());
   }
 
-  // returns the string based on the given boolean list and increments idx each
-  // step
-  abstract String traverse(ArrayList<Boolean> encoded, int idx);
+  // returns the average number of bits per letter that the given code lengths (indexed
+  // by symbol) spend on text with these frequencies
+  double averageLength(int[] codeLengths) {
+    long bits = 0;
+    long total = 0;
+    for (int idx = 0; idx < this.letters.size(); idx++) {
+      bits += (long) this.freq.get(idx) * codeLengths[this.letters.get(idx).codePointAt(0)];
+      total += this.freq.get(idx);
+    }
+    return (double) bits / total;
+  }
 
-  // returns true if this tree contains the given string
-  abstract boolean contains(String s);
+  // returns how much bigger the output gets when codes are limited to maxLength bits,
+  // as a fraction of the unlimited size (0.05 is 5% bigger)
+  double limitCost(int maxLength) {
+    return this.averageLength(this.canonicalCode(maxLength).codeLengths)
+        / this.averageLength(this.canonicalCode().codeLengths) - 1;
+  }
+}
 
-  // returns true if the right subtree contains the given string
-  abstract boolean containsRight(String s);
+//to represent a table-based asymmetric numeral systems (tANS) coder over the same
+//letters/frequencies model as a huffman; it spends fractions of a bit on each letter,
+//so it can beat huffman by up to a bit per letter when the frequencies are skewed
+//the frequencies are scaled to add up to the table size, each letter gets that many
+//of the table's states, and coding a letter moves the state while reading or writing a
+//few bits; the encoder works from the last letter back to the first so the decoder
+//can read forward
+//the packed bits are the letter count (32 bits), the encoder's last state (tableLog
+//bits), then the bits written for each letter in order
+class AnsCoder implements IEntropyCoder {
+  // the table size used unless told otherwise, as a power of 2
+  static final int DEFAULT_TABLE_LOG = 11;
 
-  // returns true if the left subtree contains the given string
-  abstract boolean containsLeft(String s);
+  ArrayList<String> letters;
+  ArrayList<Integer> freq;
+  int tableLog;
+  // the index of each symbol's letter, indexed by symbol, -1 if it is not a letter
+  int[] letterIdx;
+  // each letter's scaled frequency and the index its states start at in encodeStates
+  int[] scaled;
+  int[] starts;
+  // for each letter, the states it moves to, by the state shifted down to its range
+  int[] encodeStates;
+  // for each state: the symbol it decodes to, the bits to read next, and the state
+  // those bits are added to
+  int[] decodeSymbols;
+  byte[] decodeBits;
+  int[] decodeBases;
 
-}
+  AnsCoder(ArrayList<String> letters, ArrayList<Integer> freq, int tableLog) {
+    if (letters.size() != freq.size()) {
+      throw new IllegalArgumentException("Lists are not same size");
+    }
+    else if (letters.size() < 2) {
+      throw new IllegalArgumentException("Lists sizes are not greater than 1");
+    }
+    if (tableLog < 5 || tableLog > 20) {
+      throw new IllegalArgumentException("Table log must be between 5 and 20");
+    }
+    if (letters.size() > (1 << tableLog)) {
+      throw new IllegalArgumentException("Too many letters for the table size");
+    }
+    this.letters = letters;
+    this.freq = freq;
+    this.tableLog = tableLog;
+    int maxSymbol = 0;
+    for (String letter : letters) {
+      maxSymbol = Math.max(maxSymbol, letter.codePointAt(0));
+    }
+    this.letterIdx = new int[maxSymbol + 1];
+    Arrays.fill(this.letterIdx, -1);
+    for (int idx = 0; idx < letters.size(); idx++) {
+      this.letterIdx[letters.get(idx).codePointAt(0)] = idx;
+    }
+    this.scaleFreq();
+    this.buildTables();
+  }
 
-class Leaf extends Tree {
-  String letter;
+  AnsCoder(ArrayList<String> letters, ArrayList<Integer> freq) {
+    this(letters, freq, DEFAULT_TABLE_LOG);
+  }
 
-  Leaf(String letter, int freq) {
-    super(freq);
-    this.letter = letter;
+  // EFFECT: scales the frequencies so they add up to the table size, keeping every
+  // letter at 1 or more
+  void scaleFreq() {
+    int tableSize = 1 << this.tableLog;
+    long total = 0;
+    for (int count : this.freq) {
+      total += count;
+    }
+    this.scaled = new int[this.freq.size()];
+    int sum = 0;
+    int largest = 0;
+    for (int idx = 0; idx < this.scaled.length; idx++) {
+      this.scaled[idx] = total == 0 ? 1
+          : (int) Math.max(1, Math.round((double) this.freq.get(idx) * tableSize / total));
+      sum += this.scaled[idx];
+      largest = this.scaled[idx] > this.scaled[largest] ? idx : largest;
+    }
+    if (sum < tableSize) {
+      this.scaled[largest] += tableSize - sum;
+    }
+    // rounding up the rare letters can overshoot, so take the extra from the letters
+    // that lose the least by it
+    while (sum > tableSize) {
+      largest = 0;
+      for (int idx = 1; idx < this.scaled.length; idx++) {
+        largest = this.scaled[idx] > this.scaled[largest] ? idx : largest;
+      }
+      int taken = Math.min(sum - tableSize, this.scaled[largest] / 2);
+      this.scaled[largest] -= taken;
+      sum -= taken;
+    }
   }
 
-  // returns true if this tree contains the given string
-  boolean contains(String s) {
-    return s.equals(this.letter);
+  // EFFECT: spreads the letters over the states and builds the encode and decode tables
+  void buildTables() {
+    int tableSize = 1 << this.tableLog;
+    // spreading each letter's states across the table keeps the state changes even
+    int[] spread = new int[tableSize];
+    int step = (tableSize >>> 1) + (tableSize >>> 3) + 3;
+    int pos = 0;
+    for (int idx = 0; idx < this.scaled.length; idx++) {
+      for (int count = 0; count < this.scaled[idx]; count++) {
+        spread[pos] = idx;
+        pos = (pos + step) & (tableSize - 1);
+      }
+    }
+    this.starts = new int[this.scaled.length];
+    int[] next = new int[this.scaled.length];
+    for (int idx = 1; idx < this.scaled.length; idx++) {
+      this.starts[idx] = this.starts[idx - 1] + this.scaled[idx - 1];
+    }
+    for (int idx = 0; idx < this.scaled.length; idx++) {
+      next[idx] = this.scaled[idx];
+    }
+    this.encodeStates = new int[tableSize];
+    this.decodeSymbols = new int[tableSize];
+    this.decodeBits = new byte[tableSize];
+    this.decodeBases = new int[tableSize];
+    for (int state = 0; state < tableSize; state++) {
+      int idx = spread[state];
+      int shifted = next[idx];
+      next[idx] += 1;
+      int bits = this.tableLog - (31 - Integer.numberOfLeadingZeros(shifted));
+      this.encodeStates[this.starts[idx] + shifted - this.scaled[idx]] = tableSize + state;
+      this.decodeSymbols[state] = this.letters.get(idx).codePointAt(0);
+      this.decodeBits[state] = (byte) bits;
+      this.decodeBases[state] = (shifted << bits) - tableSize;
+    }
   }
 
-  // returns true if the right subtree contains the given string
-  boolean containsRight(String s) {
-    return s.equals(this.letter);
+  // returns the letter index of the given symbol, throwing an exception if the symbol
+  // is not one of the letters
+  int checkSymbol(int symbol) {
+    if (symbol < 0 || symbol >= this.letterIdx.length || this.letterIdx[symbol] < 0) {
+      throw new IllegalArgumentException("Tried to encode "
+          + (Character.isValidCodePoint(symbol) ? new String(Character.toChars(symbol)) : symbol)
+          + " but that is not part of the language.");
+    }
+    return this.letterIdx[symbol];
   }
 
-  // returns true if the left subtree contains the given string
-  boolean containsLeft(String s) {
-    return s.equals(this.letter);
+  // encodes the given string into a list of booleans
+  ArrayList<Boolean> encode(String s) {
+    return this.encodePacked(s).toBooleanList();
   }
 
-  // returns the string based on the given boolean list and increments idx each
-  // step
-  String traverse(ArrayList<Boolean> encoded, int idx) {
-    return this.letter + idx;
+  // encodes the given string into packed bits
+  public BitBuffer encodePacked(String s) {
+    return this.encodeSymbols(s.codePoints().toArray());
   }
-}
 
-class Node extends Tree {
-  Tree left;
-  Tree right;
+  // encodes the given bytes, each as the symbol from 0 to 255 with the same value,
+  // into packed bits
+  public BitBuffer encodeBytes(byte[] bytes) {
+    int[] symbols = new int[bytes.length];
+    for (int idx = 0; idx < bytes.length; idx++) {
+      symbols[idx] = bytes[idx] & 0xFF;
+    }
+    return this.encodeSymbols(symbols);
+  }
 
-  Node(Tree left, Tree right) {
-    super(left.freq + right.freq);
-    this.left = left;
-    this.right = right;
+  // encodes the given symbols into packed bits
+  BitBuffer encodeSymbols(int[] symbols) {
+    int tableSize = 1 << this.tableLog;
+    // the bits written for each symbol, kept until the end since they are made last
+    // symbol first
+    int[] written = new int[symbols.length];
+    byte[] writtenLengths = new byte[symbols.length];
+    int state = tableSize;
+    for (int pos = symbols.length - 1; pos >= 0; pos--) {
+      int idx = this.checkSymbol(symbols[pos]);
+      int scaledFreq = this.scaled[idx];
+      int bits = (31 - Integer.numberOfLeadingZeros(state))
+          - (31 - Integer.numberOfLeadingZeros(scaledFreq));
+      if ((state >>> bits) < scaledFreq) {
+        bits -= 1;
+      }
+      written[pos] = state & ((1 << bits) - 1);
+      writtenLengths[pos] = (byte) bits;
+      state = this.encodeStates[this.starts[idx] + (state >>> bits) - scaledFreq];
+    }
+    BitBuffer encoded = new BitBuffer();
+    encoded.append(symbols.length, 32);
+    encoded.append(state - tableSize, this.tableLog);
+    for (int pos = 0; pos < symbols.length; pos++) {
+      encoded.append(written[pos], writtenLengths[pos]);
+    }
+    return encoded;
   }
 
-  // returns true if this tree contains the given string
-  boolean contains(String s) {
-    return this.right.contains(s) || this.left.contains(s);
+  // decodes the given list of booleans
+  String decode(ArrayList<Boolean> encoded) {
+    return this.decode(new BitBuffer(encoded));
   }
 
-  // returns true if the right subtree contains the given string
-  boolean containsRight(String s) {
-    return this.right.contains(s);
+  // decodes the given packed bits into letters
+  public String decode(BitBuffer encoded) {
+    int[] symbols = this.decodeSymbols(encoded);
+    return new String(symbols, 0, symbols.length);
   }
 
-  // returns true if the left subtree contains the given string
-  boolean containsLeft(String s) {
-    return this.left.contains(s);
+  // decodes the given packed bits into bytes, for a coder over byte symbols
+  public byte[] decodeBytes(BitBuffer encoded) {
+    int[] symbols = this.decodeSymbols(encoded);
+    byte[] decoded = new byte[symbols.length];
+    for (int idx = 0; idx < symbols.length; idx++) {
+      if (symbols[idx] > 255) {
+        throw new IllegalArgumentException("Decoded a symbol that is not a byte");
+      }
+      decoded[idx] = (byte) symbols[idx];
+    }
+    return decoded;
   }
 
-  // returns the string based on the given boolean list and increments idx each
-  // step
-  String traverse(ArrayList<Boolean> encoded, int idx) {
-    if (idx >= encoded.size()) {
-      return "?" + idx;
+  // decodes the given packed bits into symbols
+  int[] decodeSymbols(BitBuffer encoded) {
+    if (encoded.size() < 32 + this.tableLog) {
+      throw new IllegalArgumentException("Encoded bits are missing the count or state");
     }
-    if (encoded.get(idx)) {
-      return this.right.traverse(encoded, idx + 1);
+    // letters with most of the states can take no bits at all, so the count can't be
+    // checked against the number of bits
+    long count = encoded.peek(0, 32);
+    if (count > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Encoded bits have an invalid count");
     }
-    else {
-      return this.left.traverse(encoded, idx + 1);
+    int[] decoded = new int[(int) count];
+    int state = (int) encoded.peek(32, this.tableLog);
+    long idx = 32 + this.tableLog;
+    for (int pos = 0; pos < decoded.length; pos++) {
+      int bits = this.decodeBits[state];
+      if (idx + bits > encoded.size()) {
+        throw new IllegalArgumentException("Encoded bits end partway through a code");
+      }
+      decoded[pos] = this.decodeSymbols[state];
+      state = this.decodeBases[state] + (bits == 0 ? 0 : (int) encoded.peek(idx, bits));
+      idx += bits;
     }
+    return decoded;
   }
 }
 
-//to represent ArrayList utils
-class ArrayUtils {
+//to represent how much a coder compresses some bytes and how fast it encodes and
+//decodes them, so backends can be chosen by measurement
+class CoderReport {
+  long originalBits;
+  long encodedBits;
+  // the total time spent over all rounds
+  long encodeNanos;
+  long decodeNanos;
+  int rounds;
 
-  // Effect: swaps elements of array at given indexes
-  <T> void swap(ArrayList<T> arr, int index1, int index2) {
-    if (index1 > arr.size() - 1 || index2 > arr.size() - 1) {
-      throw new IllegalArgumentException("Given indexes are out of bounds");
+  CoderReport(IEntropyCoder coder, byte[] data, int rounds) {
+    if (rounds < 1) {
+      throw new IllegalArgumentException("Rounds must be positive");
+    }
+    this.originalBits = data.length * 8L;
+    this.rounds = rounds;
+    for (int round = 0; round < rounds; round++) {
+      long start = System.nanoTime();
+      BitBuffer encoded = coder.encodeBytes(data);
+      long encodeEnd = System.nanoTime();
+      byte[] decoded = coder.decodeBytes(encoded);
+      long decodeEnd = System.nanoTime();
+      if (!Arrays.equals(decoded, data)) {
+        throw new IllegalStateException("Coder did not decode what it encoded");
+      }
+      this.encodedBits = encoded.size();
+      this.encodeNanos += encodeEnd - start;
+      this.decodeNanos += decodeEnd - encodeEnd;
     }
-    T oldValueAtIndex2 = arr.get(index2);
-    arr.set(index2, arr.get(index1));
-    arr.set(index1, oldValueAtIndex2);
   }
 
-  // Effect: sorts array according to comparator
-  <T> void sort(ArrayList<T> arr, Comparator<T> comp) {
-    for (int idx = 0; idx < arr.size(); idx++) {
-      int minIdxOfVal = idx;
-      for (int idx2 = idx + 1; idx2 < arr.size(); idx2++) {
-        if (comp.compare(arr.get(idx2), arr.get(minIdxOfVal)) < 0) {
-          minIdxOfVal = idx2;
+  // returns the encoded size as a fraction of the original size
+  double ratio() {
+    return this.originalBits == 0 ? 0 : (double) this.encodedBits / this.originalBits;
+  }
+
+  // returns the bytes encoded per second
+  double encodeBytesPerSecond() {
+    return this.originalBits / 8.0 * this.rounds / Math.max(1, this.encodeNanos) * 1e9;
+  }
+
+  // returns the bytes decoded per second
+  double decodeBytesPerSecond() {
+    return this.originalBits / 8.0 * this.rounds / Math.max(1, this.decodeNanos) * 1e9;
+  }
+
+  // returns the ratio and speeds on one line
+  public String toString() {
+    return String.format("ratio %.4f, encode %.1f MB/s, decode %.1f MB/s", this.ratio(),
+        this.encodeBytesPerSecond() / 1e6, this.decodeBytesPerSecond() / 1e6);
+  }
+}
+
+//to represent an LZ77 match finder: each position is hashed by its next MIN_MATCH bytes
+//into chains of earlier positions with the same hash, and the longest match found in
+//the last windowSize bytes (looking at most maxChain positions back) replaces the bytes
+//with a (length, distance) pair
+class Lz77 {
+  static final int MIN_MATCH = 3;
+  static final int MAX_MATCH = 258;
+  // the window and chain length used unless told otherwise
+  static final int DEFAULT_WINDOW_SIZE = 1 << 15;
+  static final int DEFAULT_MAX_CHAIN = 64;
+  static final int HASH_BITS = 15;
+
+  int windowSize;
+  int maxChain;
+
+  Lz77(int windowSize, int maxChain) {
+    if (windowSize < (1 << 8) || windowSize > (1 << 24) || Integer.bitCount(windowSize) != 1) {
+      throw new IllegalArgumentException("Window size must be a power of 2 between 256 and "
+          + (1 << 24));
+    }
+    if (maxChain < 1) {
+      throw new IllegalArgumentException("Max chain must be positive");
+    }
+    this.windowSize = windowSize;
+    this.maxChain = maxChain;
+  }
+
+  Lz77() {
+    this(DEFAULT_WINDOW_SIZE, DEFAULT_MAX_CHAIN);
+  }
+
+  // returns the hash of the MIN_MATCH bytes starting at pos
+  static int hash(byte[] data, int pos) {
+    int bytes = (data[pos] & 0xFF) << 16 | (data[pos + 1] & 0xFF) << 8 | (data[pos + 2] & 0xFF);
+    return (bytes * 0x9E3779B1) >>> (32 - HASH_BITS);
+  }
+
+  // returns the given bytes as literals and matches
+  LzTokens parse(byte[] data) {
+    LzTokens tokens = new LzTokens();
+    // the latest position with each hash, and for each position in the window the one
+    // before it with the same hash (no bigger than the data, so a big window costs
+    // nothing on small inputs)
+    int[] head = new int[1 << HASH_BITS];
+    int[] prev = new int[Math.min(this.windowSize, Integer.highestOneBit(data.length | 1) << 1)];
+    int mask = prev.length - 1;
+    Arrays.fill(head, -1);
+    int pos = 0;
+    while (pos < data.length) {
+      int bestLength = 0;
+      int bestDistance = 0;
+      if (pos + MIN_MATCH <= data.length) {
+        int maxLength = Math.min(MAX_MATCH, data.length - pos);
+        int candidate = head[Lz77.hash(data, pos)];
+        int chain = this.maxChain;
+        while (candidate >= 0 && pos - candidate < this.windowSize && chain > 0) {
+          int length = 0;
+          while (length < maxLength && data[candidate + length] == data[pos + length]) {
+            length += 1;
+          }
+          if (length > bestLength) {
+            bestLength = length;
+            bestDistance = pos - candidate;
+            if (length == maxLength) {
+              break;
+            }
+          }
+          candidate = prev[candidate & mask];
+          chain -= 1;
+        }
+      }
+      int advance = bestLength >= MIN_MATCH ? bestLength : 1;
+      if (bestLength >= MIN_MATCH) {
+        tokens.addMatch(bestLength, bestDistance);
+      }
+      else {
+        tokens.addLiteral(data[pos] & 0xFF);
+      }
+      for (int end = pos + advance; pos < end; pos++) {
+        if (pos + MIN_MATCH <= data.length) {
+          int hash = Lz77.hash(data, pos);
+          prev[pos & mask] = head[hash];
+          head[hash] = pos;
         }
       }
-      new ArrayUtils().swap(arr, idx, minIdxOfVal);
     }
+    return tokens;
   }
 }
 
-//to represent comparing the freq of two trees
-class TreeCompare implements Comparator<Tree> {
-  // to compare the freq of two trees
-  public int compare(Tree o1, Tree o2) {
-    return o1.freq - o2.freq;
+//to represent the output of an LZ77 parse: for each token its match length, or 0 for a
+//literal, and its match distance or literal byte
+class LzTokens {
+  int[] lengths;
+  int[] values;
+  int count;
+
+  LzTokens() {
+    this.lengths = new int[16];
+    this.values = new int[16];
+    this.count = 0;
   }
-}
 
-//to represent comparing integers
-class IntCompare implements Comparator<Integer> {
-  // to return the difference of two Integers
-  public int compare(Integer o1, Integer o2) {
-    return o1 - o2;
+  // EFFECT: adds a literal byte
+  void addLiteral(int literal) {
+    this.add(0, literal);
   }
-}
 
-//to represent comparing strings
-class StringCompare implements Comparator<String> {
-  // to return the lexicographical difference between two strings
-  public int compare(String o1, String o2) {
-    return o1.compareTo(o2);
+  // EFFECT: adds a match of the given length, starting distance bytes back
+  void addMatch(int length, int distance) {
+    this.add(length, distance);
+  }
+
+  // EFFECT: adds a token, growing the arrays if they are full
+  void add(int length, int value) {
+    if (this.count == this.lengths.length) {
+      this.lengths = Arrays.copyOf(this.lengths, this.count * 2);
+      this.values = Arrays.copyOf(this.values, this.count * 2);
+    }
+    this.lengths[this.count] = length;
+    this.values[this.count] = value;
+    this.count += 1;
   }
 }
 
-//to represent examples of huffman
-class ExamplesHuffman {
-  // Create examples
-  ArrayList<Integer> numList1;
-  ArrayList<Integer> numList2;
-  ArrayList<String> letterList1;
-  ArrayList<String> letterList2;
-  Leaf leaf1;
-  Leaf leaf2;
-  Leaf leaf3;
-  Node node1;
-  Node node2;
+//to represent an LZ77 stage in front of huffman coding, laid out like DEFLATE: literals
+//(0 to 255), an end symbol (256) and match lengths (257 and up) share one code, match
+//distances have a second code, and both lengths and distances are a code for a range
+//plus extra bits for where in the range they are
+//the distance codes go past DEFLATE's 30 for windows bigger than 32K, 2 for each power
+//of 2
+//the packed bits are each code's header (a 32-bit byte count, then the bytes), then the
+//codes and extra bits of the tokens, then the end symbol
+class LzCoder implements IEntropyCoder {
+  static final int END_SYMBOL = 256;
+  // the first length of each length code, and how many extra bits follow it
+  static final int[] LENGTH_BASE = { 3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31,
+      35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195, 227, 258 };
+  static final int[] LENGTH_EXTRA = { 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2, 3, 3, 3,
+      3, 4, 4, 4, 4, 5, 5, 5, 5, 0 };
+  // the longest code either code may have, as in DEFLATE
+  static final int MAX_CODE_LENGTH = 15;
+
+  Lz77 matcher;
+
+  LzCoder(Lz77 matcher) {
+    this.matcher = matcher;
+  }
+
+  LzCoder() {
+    this(new Lz77());
+  }
+
+  // returns the length code (0 to 28) of the given match length
+  static int lengthCode(int length) {
+    int code = LENGTH_BASE.length - 1;
+    while (LENGTH_BASE[code] > length) {
+      code -= 1;
+    }
+    return code;
+  }
+
+  // returns the distance code of the given match distance
+  static int distanceCode(int distance) {
+    int value = distance - 1;
+    if (value < 4) {
+      return value;
+    }
+    int log = 31 - Integer.numberOfLeadingZeros(value);
+    return 2 * log + ((value >>> (log - 1)) & 1);
+  }
+
+  // returns the number of extra bits after the given distance code
+  static int distanceExtra(int code) {
+    return code < 4 ? 0 : (code >>> 1) - 1;
+  }
+
+  // returns the first distance of the given distance code
+  static int distanceBase(int code) {
+    return code < 4 ? code + 1 : 1 + ((2 | (code & 1)) << distanceExtra(code));
+  }
+
+  // returns a length-limited canonical code for the symbols with the given counts,
+  // adding unused symbols if needed so there are at least 2
+  static CanonicalCode codeFor(int[] counts) {
+    boolean[] kept = new boolean[counts.length];
+    int keptCount = 0;
+    for (int symbol = 0; symbol < counts.length; symbol++) {
+      kept[symbol] = counts[symbol] > 0;
+      keptCount += kept[symbol] ? 1 : 0;
+    }
+    for (int symbol = 0; symbol < counts.length && keptCount < 2; symbol++) {
+      if (!kept[symbol]) {
+        kept[symbol] = true;
+        keptCount += 1;
+      }
+    }
+    int[] symbols = new int[keptCount];
+    int[] freq = new int[keptCount];
+    int idx = 0;
+    for (int symbol = 0; symbol < counts.length; symbol++) {
+      if (kept[symbol]) {
+        symbols[idx] = symbol;
+        freq[idx] = counts[symbol];
+        idx += 1;
+      }
+    }
+    return new Huffman(symbols, freq).canonicalCode(MAX_CODE_LENGTH);
+  }
+
+  // encodes the UTF-8 bytes of the given string
+  public BitBuffer encodePacked(String s) {
+    return this.encodeBytes(s.getBytes(StandardCharsets.UTF_8));
+  }
+
+  // decodes the given packed bits into a string, reading the bytes as UTF-8
+  public String decode(BitBuffer encoded) {
+    return new String(this.decodeBytes(encoded), StandardCharsets.UTF_8);
+  }
+
+  // encodes the given bytes: finds matches, then huffman codes the tokens
+  public BitBuffer encodeBytes(byte[] bytes) {
+    LzTokens tokens = this.matcher.parse(bytes);
+    int[] litLenCounts = new int[END_SYMBOL + 1 + LENGTH_BASE.length];
+    int[] distanceCounts = new int[2 * Integer.numberOfTrailingZeros(this.matcher.windowSize)];
+    for (int idx = 0; idx < tokens.count; idx++) {
+      if (tokens.lengths[idx] == 0) {
+        litLenCounts[tokens.values[idx]] += 1;
+      }
+      else {
+        litLenCounts[END_SYMBOL + 1 + LzCoder.lengthCode(tokens.lengths[idx])] += 1;
+        distanceCounts[LzCoder.distanceCode(tokens.values[idx])] += 1;
+      }
+    }
+    litLenCounts[END_SYMBOL] += 1;
+    CanonicalCode litLenCode = LzCoder.codeFor(litLenCounts);
+    CanonicalCode distanceCode = LzCoder.codeFor(distanceCounts);
+    BitBuffer encoded = new BitBuffer();
+    LzCoder.appendHeader(litLenCode.header(), encoded);
+    LzCoder.appendHeader(distanceCode.header(), encoded);
+    for (int idx = 0; idx < tokens.count; idx++) {
+      int length = tokens.lengths[idx];
+      if (length == 0) {
+        litLenCode.encodeSymbol(tokens.values[idx], encoded);
+      }
+      else {
+        int lengthCode = LzCoder.lengthCode(length);
+        litLenCode.encodeSymbol(END_SYMBOL + 1 + lengthCode, encoded);
+        encoded.append(length - LENGTH_BASE[lengthCode], LENGTH_EXTRA[lengthCode]);
+        int code = LzCoder.distanceCode(tokens.values[idx]);
+        distanceCode.encodeSymbol(code, encoded);
+        encoded.append(tokens.values[idx] - LzCoder.distanceBase(code),
+            LzCoder.distanceExtra(code));
+      }
+    }
+    litLenCode.encodeSymbol(END_SYMBOL, encoded);
+    return encoded;
+  }
+
+  // EFFECT: appends the given header's byte count and bytes to the given bits
+  static void appendHeader(byte[] header, BitBuffer encoded) {
+    encoded.append(header.length, 32);
+    for (byte b : header) {
+      encoded.append(b, 8);
+    }
+  }
+
+  // returns the code whose header starts at idx, or throws an exception if the header
+  // runs past the end of the given bits
+  static CanonicalCode readHeader(BitBuffer encoded, long idx) {
+    long length = encoded.peek(idx, 32);
+    if (idx + 32 + length * 8 > encoded.size()) {
+      throw new IllegalArgumentException("Encoded bits end partway through a header");
+    }
+    byte[] header = new byte[(int) length];
+    for (int pos = 0; pos < header.length; pos++) {
+      header[pos] = (byte) encoded.peek(idx + 32 + pos * 8L, 8);
+    }
+    return new CanonicalCode(header);
+  }
+
+  // returns the index just past the header that starts at idx, from the byte count
+  // stored before it
+  static long headerEnd(BitBuffer encoded, long idx) {
+    return idx + 32 + encoded.peek(idx, 32) * 8;
+  }
+
+  // returns the count (0 to 64) bits at idx, checking they are within the given bits
+  static long readBits(BitBuffer encoded, long idx, int count) {
+    if (idx + count > encoded.size()) {
+      throw new IllegalArgumentException("Encoded bits end partway through a code");
+    }
+    return count == 0 ? 0 : encoded.peek(idx, count);
+  }
+
+  // returns the symbol whose code starts at idx packed with the index after it, as
+  // DecodeTable.next does, throwing an exception if the code is cut off
+  static long readSymbol(CanonicalCode code, BitBuffer encoded, long idx) {
+    long next = code.decodeTable.next(encoded, idx, encoded.size());
+    if (next < 0) {
+      throw new IllegalArgumentException("Encoded bits end partway through a code");
+    }
+    return next;
+  }
+
+  // decodes the given packed bits into bytes, copying each match from the bytes
+  // already decoded
+  public byte[] decodeBytes(BitBuffer encoded) {
+    int mask = (1 << DecodeTable.SYMBOL_BITS) - 1;
+    CanonicalCode litLenCode = LzCoder.readHeader(encoded, 0);
+    long idx = LzCoder.headerEnd(encoded, 0);
+    CanonicalCode distanceCode = LzCoder.readHeader(encoded, idx);
+    idx = LzCoder.headerEnd(encoded, idx);
+    byte[] decoded = new byte[64];
+    int length = 0;
+    while (true) {
+      long next = LzCoder.readSymbol(litLenCode, encoded, idx);
+      int symbol = (int) (next & mask);
+      idx = next >>> DecodeTable.SYMBOL_BITS;
+      if (symbol == END_SYMBOL) {
+        return Arrays.copyOf(decoded, length);
+      }
+      int matchLength = 1;
+      if (symbol > END_SYMBOL) {
+        int lengthCode = symbol - END_SYMBOL - 1;
+        if (lengthCode >= LENGTH_BASE.length) {
+          throw new IllegalArgumentException("Encoded bits have an invalid length code");
+        }
+        matchLength = LENGTH_BASE[lengthCode]
+            + (int) LzCoder.readBits(encoded, idx, LENGTH_EXTRA[lengthCode]);
+        idx += LENGTH_EXTRA[lengthCode];
+      }
+      if (length + matchLength > decoded.length) {
+        decoded = Arrays.copyOf(decoded, Math.max(decoded.length * 2, length + matchLength));
+      }
+      if (symbol < END_SYMBOL) {
+        decoded[length] = (byte) symbol;
+      }
+      else {
+        next = LzCoder.readSymbol(distanceCode, encoded, idx);
+        int code = (int) (next & mask);
+        idx = next >>> DecodeTable.SYMBOL_BITS;
+        if (code >= 48) {
+          throw new IllegalArgumentException("Encoded bits have an invalid distance code");
+        }
+        int distance = LzCoder.distanceBase(code)
+            + (int) LzCoder.readBits(encoded, idx, LzCoder.distanceExtra(code));
+        idx += LzCoder.distanceExtra(code);
+        if (distance > length) {
+          throw new IllegalArgumentException("Encoded bits have a distance past the start");
+        }
+        // copied a byte at a time, since a match may overlap the bytes it makes
+        for (int pos = length; pos < length + matchLength; pos++) {
+          decoded[pos] = decoded[pos - distance];
+        }
+      }
+      length += matchLength;
+    }
+  }
+}
+
+//to represent counters a huffman tells about its work, so its cost and how well its
+//model fits the data can be watched while it runs
+interface ICodecCounters {
+  // EFFECT: counts a build of the tree, code table or decode table that took the given
+  // time
+  void built(long nanos);
+
+  // EFFECT: counts an encode of the given number of symbols into the given number of
+  // bits that took the given time
+  void encoded(long symbols, long bits, long nanos);
+
+  // EFFECT: counts a decode of the given number of symbols that took the given time
+  void decoded(long symbols, long nanos);
+}
+
+//to represent counters that add up everything a huffman tells them, safe to share
+//between threads and huffmans
+class CodecStats implements ICodecCounters {
+  LongAdder builds;
+  LongAdder buildNanos;
+  LongAdder encodedSymbols;
+  LongAdder encodedBits;
+  LongAdder encodeNanos;
+  LongAdder decodedSymbols;
+  LongAdder decodeNanos;
+
+  CodecStats() {
+    this.builds = new LongAdder();
+    this.buildNanos = new LongAdder();
+    this.encodedSymbols = new LongAdder();
+    this.encodedBits = new LongAdder();
+    this.encodeNanos = new LongAdder();
+    this.decodedSymbols = new LongAdder();
+    this.decodeNanos = new LongAdder();
+  }
+
+  // EFFECT: adds a build to the totals
+  public void built(long nanos) {
+    this.builds.increment();
+    this.buildNanos.add(nanos);
+  }
+
+  // EFFECT: adds an encode to the totals
+  public void encoded(long symbols, long bits, long nanos) {
+    this.encodedSymbols.add(symbols);
+    this.encodedBits.add(bits);
+    this.encodeNanos.add(nanos);
+  }
+
+  // EFFECT: adds a decode to the totals
+  public void decoded(long symbols, long nanos) {
+    this.decodedSymbols.add(symbols);
+    this.decodeNanos.add(nanos);
+  }
+
+  // returns the average bits each encoded symbol took
+  double bitsPerSymbol() {
+    long symbols = this.encodedSymbols.sum();
+    return symbols == 0 ? 0 : (double) this.encodedBits.sum() / symbols;
+  }
+
+  // returns the symbols encoded per second, which is bytes per second for byte codes
+  double encodeSymbolsPerSecond() {
+    return this.encodedSymbols.sum() / (Math.max(1, this.encodeNanos.sum()) / 1e9);
+  }
+
+  // returns the symbols decoded per second, which is bytes per second for byte codes
+  double decodeSymbolsPerSecond() {
+    return this.decodedSymbols.sum() / (Math.max(1, this.decodeNanos.sum()) / 1e9);
+  }
+
+  // returns a one line summary of the given huffman's model and these totals: how far
+  // its average code length is above the entropy of its frequencies, how long its
+  // longest code is, and the time and speed counted
+  // a data bits per symbol well above the model's average means the data has drifted
+  // away from the frequencies the huffman was built with
+  String summary(Huffman huffman) {
+    double average = huffman.averageLength(huffman.canonicalCode().codeLengths);
+    double entropy = huffman.entropy();
+    return String.format("model %.3f bits vs entropy %.3f (+%.1f%%), max depth %d, "
+        + "data %.3f bits, build %.3f ms, encode %.1f M/s, decode %.1f M/s", average, entropy,
+        entropy == 0 ? 0 : (average / entropy - 1) * 100, huffman.maxDepth(),
+        this.bitsPerSymbol(), this.buildNanos.sum() / 1e6, this.encodeSymbolsPerSecond() / 1e6,
+        this.decodeSymbolsPerSecond() / 1e6);
+  }
+}
+
+//to represent a tree data struture
+abstract class Tree {
+  int freq;
+
+  Tree(int freq) {
+    this.freq = freq;
+  }
+
+  // returns the string based on the given boolean list and increments idx each
+  // step
+  abstract String traverse(ArrayList<Boolean> encoded, int idx);
+
+  // returns the symbol reached by following the given bits from idx, packed with the
+  // index just past the bits that were used, or -1 if the bits run out at to first
+  abstract long walk(BitBuffer encoded, long idx, long to);
+
+  // returns the symbol reached by following the highest count bits of the given bits,
+  // packed with used plus the number of bits followed, or -1 if the bits run out first
+  abstract long walk(long bits, int count, int used);
+
+  // returns true if this tree contains the given string
+  abstract boolean contains(String s);
+
+  // returns the length of the longest path from this tree to a leaf
+  abstract int height();
+
+  // EFFECT: fills in the entries of the given table for every code in this tree,
+  // which is reached by the given path (depth bits long)
+  abstract void fillTable(DecodeTable table, int path, int depth);
+
+  // returns true if the right subtree contains the given string
+  abstract boolean containsRight(String s);
+
+  // returns true if the left subtree contains the given string
+  abstract boolean containsLeft(String s);
+
+  // EFFECT: sets the code of every symbol in this tree to the given path (depth bits
+  // long) followed by the rest of the way down
+  abstract void addCodes(long[] bits, int[] lengths, long path, int depth);
+}
+
+class Leaf extends Tree {
+  String letter;
+  // the code point of the letter
+  int symbol;
+
+  Leaf(String letter, int freq) {
+    super(freq);
+    this.letter = letter;
+    this.symbol = letter.codePointAt(0);
+  }
+
+  Leaf(int symbol, int freq) {
+    this(new String(Character.toChars(symbol)), freq);
+  }
+
+  // returns true if this tree contains the given string
+  boolean contains(String s) {
+    return s.equals(this.letter);
+  }
+
+  // returns the length of the longest path from this tree to a leaf
+  int height() {
+    return 0;
+  }
+
+  // EFFECT: fills in the table entries whose prefix starts with this letter's code
+  void fillTable(DecodeTable table, int path, int depth) {
+    table.addSymbol(this.symbol, path, depth);
+  }
+
+  // returns true if the right subtree contains the given string
+  boolean containsRight(String s) {
+    return s.equals(this.letter);
+  }
+
+  // returns true if the left subtree contains the given string
+  boolean containsLeft(String s) {
+    return s.equals(this.letter);
+  }
+
+  // returns the string based on the given boolean list and increments idx each
+  // step
+  String traverse(ArrayList<Boolean> encoded, int idx) {
+    return this.letter + idx;
+  }
+
+  // returns this symbol packed with the given idx, since a leaf uses no bits
+  long walk(BitBuffer encoded, long idx, long to) {
+    return DecodeTable.pack(this.symbol, idx);
+  }
+
+  // returns this symbol packed with the given used, since a leaf uses no bits
+  long walk(long bits, int count, int used) {
+    return DecodeTable.pack(this.symbol, used);
+  }
+
+  // EFFECT: sets the code of this letter to the given path
+  void addCodes(long[] bits, int[] lengths, long path, int depth) {
+    bits[this.symbol] = path;
+    lengths[this.symbol] = depth;
+  }
+}
+
+class Node extends Tree {
+  Tree left;
+  Tree right;
+
+  Node(Tree left, Tree right) {
+    super(left.freq + right.freq);
+    this.left = left;
+    this.right = right;
+  }
+
+  // returns true if this tree contains the given string
+  boolean contains(String s) {
+    return this.right.contains(s) || this.left.contains(s);
+  }
+
+  // returns the length of the longest path from this tree to a leaf
+  int height() {
+    return 1 + Math.max(this.left.height(), this.right.height());
+  }
+
+  // EFFECT: fills in the table entries of both subtrees, or hands this subtree to the
+  // table if it is reached by a full table prefix
+  void fillTable(DecodeTable table, int path, int depth) {
+    if (depth == table.tableBits) {
+      table.addSubtree(this, path);
+    }
+    else {
+      this.left.fillTable(table, path << 1, depth + 1);
+      this.right.fillTable(table, (path << 1) | 1, depth + 1);
+    }
+  }
+
+  // returns true if the right subtree contains the given string
+  boolean containsRight(String s) {
+    return this.right.contains(s);
+  }
+
+  // returns true if the left subtree contains the given string
+  boolean containsLeft(String s) {
+    return this.left.contains(s);
+  }
+
+  // returns the string based on the given boolean list and increments idx each
+  // step
+  String traverse(ArrayList<Boolean> encoded, int idx) {
+    if (idx >= encoded.size()) {
+      return "?" + idx;
+    }
+    if (encoded.get(idx)) {
+      return this.right.traverse(encoded, idx + 1);
+    }
+    else {
+      return this.left.traverse(encoded, idx + 1);
+    }
+  }
+
+  // returns the symbol reached by following the given bits from idx, packed with the
+  // index just past the bits that were used, or -1 if the bits run out at to first
+  long walk(BitBuffer encoded, long idx, long to) {
+    if (idx >= to) {
+      return -1;
+    }
+    if (encoded.get(idx)) {
+      return this.right.walk(encoded, idx + 1, to);
+    }
+    else {
+      return this.left.walk(encoded, idx + 1, to);
+    }
+  }
+
+  // returns the symbol reached by following the highest count bits of the given bits,
+  // packed with used plus the number of bits followed, or -1 if the bits run out first
+  long walk(long bits, int count, int used) {
+    if (count == 0) {
+      return -1;
+    }
+    if (bits < 0) {
+      return this.right.walk(bits << 1, count - 1, used + 1);
+    }
+    else {
+      return this.left.walk(bits << 1, count - 1, used + 1);
+    }
+  }
+
+  // EFFECT: sets the codes of both subtrees, with a 0 bit for the left and a 1 bit
+  // for the right
+  void addCodes(long[] bits, int[] lengths, long path, int depth) {
+    if (depth == 64) {
+      throw new RuntimeException("Codes longer than 64 bits are not supported");
+    }
+    this.left.addCodes(bits, lengths, path << 1, depth + 1);
+    this.right.addCodes(bits, lengths, (path << 1) | 1, depth + 1);
+  }
+}
+
+//to represent the two queues used to merge sorted trees: the original trees in order,
+//and the merged nodes in the order they were made
+class MergeQueue {
+  ArrayList<Tree> sorted;
+  ArrayList<Tree> merged;
+  int sortedIdx;
+  int mergedIdx;
+
+  MergeQueue(ArrayList<Tree> sorted) {
+    this.sorted = sorted;
+    this.merged = new ArrayList<Tree>();
+    this.sortedIdx = 0;
+    this.mergedIdx = 0;
+  }
+
+  // returns the number of trees left in both queues
+  int size() {
+    return this.sorted.size() - this.sortedIdx + this.merged.size() - this.mergedIdx;
+  }
+
+  // EFFECT: adds a merged node to the back of the merged queue
+  void add(Tree tree) {
+    this.merged.add(tree);
+  }
+
+  // EFFECT: removes and returns the lightest tree, preferring the original trees on
+  // ties
+  Tree poll() {
+    if (this.size() == 0) {
+      throw new RuntimeException("Cannot poll an empty queue");
+    }
+    if (this.mergedIdx == this.merged.size() || (this.sortedIdx < this.sorted.size()
+        && this.sorted.get(this.sortedIdx).freq <= this.merged.get(this.mergedIdx).freq)) {
+      this.sortedIdx += 1;
+      return this.sorted.get(this.sortedIdx - 1);
+    }
+    this.mergedIdx += 1;
+    return this.merged.get(this.mergedIdx - 1);
+  }
+}
+
+//to represent a canonical prefix code: the codes are handed out in order of length, and
+//in order of symbol within a length, so the code lengths alone are enough to rebuild
+//every code and the tree
+//a code is fully built when it is made and never changes after, so one code can be
+//shared by any number of threads
+class CanonicalCode {
+  // the header formats: a length for every symbol up to the largest one, or a
+  // (3-byte symbol, length) pair for every symbol in the code
+  static final byte DENSE_HEADER = 0;
+  static final byte SPARSE_HEADER = 1;
+
+  // the code for each symbol, indexed by symbol, 0 bits long if it is not in the code
+  final long[] codeBits;
+  final int[] codeLengths;
+  // the symbols in code order, with their codes and lengths
+  final int[] sortedSymbols;
+  final long[] sortedBits;
+  final int[] sortedLengths;
+  final Tree tree;
+  final DecodeTable decodeTable;
+
+  CanonicalCode(int[] codeLengths) {
+    if (codeLengths.length > Character.MAX_CODE_POINT + 1) {
+      throw new IllegalArgumentException("Too many symbols for a code");
+    }
+    this.codeLengths = codeLengths.clone();
+    this.codeBits = new long[codeLengths.length];
+    int[] count = new int[65];
+    int letterCount = 0;
+    for (int length : codeLengths) {
+      if (length < 0 || length > 64) {
+        throw new IllegalArgumentException("Code lengths must be between 0 and 64");
+      }
+      count[length] += 1;
+      letterCount += length > 0 ? 1 : 0;
+    }
+    if (letterCount < 2 || !this.isComplete(count)) {
+      throw new IllegalArgumentException("Code lengths do not form a complete prefix code");
+    }
+    // the first code and first sorted position of each length
+    long[] nextBits = new long[65];
+    int[] nextIdx = new int[65];
+    for (int length = 1; length < 64; length++) {
+      nextBits[length + 1] = (nextBits[length] + count[length]) << 1;
+      nextIdx[length + 1] = nextIdx[length] + count[length];
+    }
+    this.sortedSymbols = new int[letterCount];
+    this.sortedBits = new long[letterCount];
+    this.sortedLengths = new int[letterCount];
+    for (int symbol = 0; symbol < codeLengths.length; symbol++) {
+      int length = codeLengths[symbol];
+      if (length > 0) {
+        int idx = nextIdx[length];
+        this.codeBits[symbol] = nextBits[length];
+        this.sortedSymbols[idx] = symbol;
+        this.sortedBits[idx] = nextBits[length];
+        this.sortedLengths[idx] = length;
+        nextBits[length] += 1;
+        nextIdx[length] += 1;
+      }
+    }
+    this.tree = this.buildTree(0, letterCount, 0);
+    this.decodeTable = new DecodeTable(this.tree,
+        Math.min(this.tree.height(), DecodeTable.MAX_TABLE_BITS));
+  }
+
+  CanonicalCode(byte[] header) {
+    this(CanonicalCode.readHeader(header));
+  }
+
+  // returns true if the given number of codes of each length exactly fill the code
+  // space, so every bit string starts with some code
+  boolean isComplete(int[] count) {
+    // the number of codes of the current length that are still free
+    long free = 1;
+    for (int length = 1; length <= 64; length++) {
+      free = (free << 1) - count[length];
+      if (free < 0) {
+        return false;
+      }
+      if (free > Long.MAX_VALUE >> 1) {
+        free = Long.MAX_VALUE >> 1;
+      }
+    }
+    return free == 0;
+  }
+
+  // returns the tree of the sorted codes from lo up to hi, which all start with the
+  // same depth bits
+  Tree buildTree(int lo, int hi, int depth) {
+    if (hi - lo == 1) {
+      return new Leaf(this.sortedSymbols[lo], 0);
+    }
+    // codes in order are sorted bit by bit, so the ones with a 1 next come last
+    int left = lo;
+    int right = hi;
+    while (left < right) {
+      int mid = (left + right) >>> 1;
+      if (((this.sortedBits[mid] >>> (this.sortedLengths[mid] - 1 - depth)) & 1) == 0) {
+        left = mid + 1;
+      }
+      else {
+        right = mid;
+      }
+    }
+    return new Node(this.buildTree(lo, left, depth + 1), this.buildTree(left, hi, depth + 1));
+  }
+
+  // returns the header for this code: whichever of the two formats is smaller
+  byte[] header() {
+    int denseSize = 1 + 4 + this.codeLengths.length;
+    int sparseSize = 1 + 4 + 4 * this.sortedSymbols.length;
+    ByteBuffer header = ByteBuffer.allocate(Math.min(denseSize, sparseSize));
+    if (denseSize <= sparseSize) {
+      header.put(DENSE_HEADER).putInt(this.codeLengths.length);
+      for (int length : this.codeLengths) {
+        header.put((byte) length);
+      }
+    }
+    else {
+      header.put(SPARSE_HEADER).putInt(this.sortedSymbols.length);
+      for (int symbol = 0; symbol < this.codeLengths.length; symbol++) {
+        if (this.codeLengths[symbol] > 0) {
+          header.put((byte) (symbol >>> 16)).putShort((short) symbol)
+              .put((byte) this.codeLengths[symbol]);
+        }
+      }
+    }
+    return header.array();
+  }
+
+  // returns the code lengths, indexed by symbol, stored in the given header
+  static int[] readHeader(byte[] bytes) {
+    ByteBuffer header = ByteBuffer.wrap(bytes);
+    if (header.remaining() < 1 + 4) {
+      throw new IllegalArgumentException("Header is truncated");
+    }
+    byte format = header.get();
+    int count = header.getInt();
+    if (count < 0 || count > Character.MAX_CODE_POINT + 1) {
+      throw new IllegalArgumentException("Header has an invalid symbol count");
+    }
+    // dense entries are a length, sparse ones a 3-byte symbol and a length
+    int entrySize;
+    if (format == DENSE_HEADER) {
+      entrySize = 1;
+    }
+    else if (format == SPARSE_HEADER) {
+      entrySize = 4;
+    }
+    else {
+      throw new IllegalArgumentException("Header has an unknown format");
+    }
+    if (header.remaining() < (long) count * entrySize) {
+      throw new IllegalArgumentException("Header is truncated");
+    }
+    if (format == DENSE_HEADER) {
+      int[] lengths = new int[count];
+      for (int symbol = 0; symbol < count; symbol++) {
+        lengths[symbol] = header.get();
+      }
+      return lengths;
+    }
+    else {
+      int[] symbols = new int[count];
+      byte[] symbolLengths = new byte[count];
+      int maxSymbol = 0;
+      for (int idx = 0; idx < count; idx++) {
+        symbols[idx] = (header.get() & 0xFF) << 16 | (header.getShort() & 0xFFFF);
+        symbolLengths[idx] = header.get();
+        maxSymbol = Math.max(maxSymbol, symbols[idx]);
+      }
+      if (maxSymbol > Character.MAX_CODE_POINT) {
+        throw new IllegalArgumentException("Header has an invalid symbol");
+      }
+      int[] lengths = new int[maxSymbol + 1];
+      for (int idx = 0; idx < count; idx++) {
+        lengths[symbols[idx]] = symbolLengths[idx];
+      }
+      return lengths;
+    }
+  }
+
+  // encodes the code points of the given string into packed bits
+  BitBuffer encode(String s) {
+    BitBuffer encoded = new BitBuffer();
+    for (int idx = 0; idx < s.length(); idx += Character.charCount(s.codePointAt(idx))) {
+      this.encodeSymbol(s.codePointAt(idx), encoded);
+    }
+    return encoded;
+  }
+
+  // encodes the given symbols into packed bits
+  BitBuffer encodeSymbols(int[] symbols) {
+    BitBuffer encoded = new BitBuffer();
+    this.encode(symbols, 0, symbols.length, encoded);
+    return encoded;
+  }
+
+  // EFFECT: appends the codes of the symbols from index from up to index to onto the
+  // given bits
+  void encode(int[] symbols, int from, int to, BitBuffer encoded) {
+    for (int idx = from; idx < to; idx++) {
+      this.encodeSymbol(symbols[idx], encoded);
+    }
+  }
+
+  // EFFECT: appends the codes of the first length bytes, each read as the symbol with
+  // the same value from 0 to 255, to the given bits
+  void encode(byte[] bytes, int length, BitBuffer encoded) {
+    for (int idx = 0; idx < length; idx++) {
+      this.encodeSymbol(bytes[idx] & 0xFF, encoded);
+    }
+  }
+
+  // EFFECT: appends the code of the given symbol to the given bits
+  void encodeSymbol(int symbol, BitBuffer encoded) {
+    if (symbol < 0 || symbol >= this.codeLengths.length || this.codeLengths[symbol] == 0) {
+      throw new IllegalArgumentException("Tried to encode "
+          + (Character.isValidCodePoint(symbol) ? new String(Character.toChars(symbol)) : symbol)
+          + " but that is not part of the language.");
+    }
+    encoded.append(this.codeBits[symbol], this.codeLengths[symbol]);
+  }
+
+  // decodes the given packed bits, ending with "?" if the last code is cut off
+  String decode(BitBuffer encoded) {
+    return this.decodeTable.decode(encoded);
+  }
+
+  // decodes the given packed bits into symbols
+  int[] decodeSymbols(BitBuffer encoded) {
+    return this.decodeTable.decodeSymbols(encoded, 0, encoded.size());
+  }
+
+  // decodes the given packed bits into bytes, for a code over byte symbols
+  byte[] decodeBytes(BitBuffer encoded) {
+    return this.decodeTable.decodeBytes(encoded, 0, encoded.size());
+  }
+
+  // returns the number of bits the codes of the bytes from in's position to its limit
+  // take, putting the packed bits straight into out (see DirectCoding)
+  long encode(ByteBuffer in, ByteBuffer out) {
+    return DirectCoding.encode(this.codeBits, this.codeLengths, in, out);
+  }
+
+  // returns the number of bytes decoded from the first bitCount bits at in's position,
+  // putting them straight into out (see DirectCoding)
+  int decode(ByteBuffer in, long bitCount, ByteBuffer out) {
+    return DirectCoding.decode(this.decodeTable, in, bitCount, out);
+  }
+}
+
+//to represent a bounded cache of canonical codes keyed by their frequencies, so a few
+//recurring models are each built once and then shared; when full, the code used least
+//recently is dropped
+class CodecCache {
+  // the number of codes kept unless told otherwise
+  static final int DEFAULT_CAPACITY = 64;
+
+  int capacity;
+  // in order of use, least recent first
+  LinkedHashMap<FrequencyKey, CanonicalCode> codes;
+  long hits;
+  long misses;
+
+  CodecCache(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be positive");
+    }
+    this.capacity = capacity;
+    this.codes = new LinkedHashMap<FrequencyKey, CanonicalCode>(16, 0.75f, true);
+    this.hits = 0;
+    this.misses = 0;
+  }
+
+  CodecCache() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  // returns the canonical code of a huffman over the given letters and frequencies,
+  // building it only if it is not already cached
+  CanonicalCode get(ArrayList<String> letters, ArrayList<Integer> freq) {
+    if (letters.size() != freq.size()) {
+      throw new IllegalArgumentException("Lists are not same size");
+    }
+    int[] symbols = new int[letters.size()];
+    int[] counts = new int[freq.size()];
+    for (int idx = 0; idx < symbols.length; idx++) {
+      symbols[idx] = letters.get(idx).codePointAt(0);
+      counts[idx] = freq.get(idx);
+    }
+    return this.get(symbols, counts);
+  }
+
+  // returns the canonical code of a huffman over the given symbols and frequencies,
+  // building it only if it is not already cached
+  // the code is built outside the lock, so a slow build never holds up other threads'
+  // lookups; if two threads build the same code, the first one cached is kept
+  CanonicalCode get(int[] symbols, int[] freq) {
+    FrequencyKey key = new FrequencyKey(symbols, freq);
+    synchronized (this) {
+      CanonicalCode cached = this.codes.get(key);
+      if (cached != null) {
+        this.hits += 1;
+        return cached;
+      }
+      this.misses += 1;
+    }
+    CanonicalCode built = new Huffman(symbols, freq).canonicalCode();
+    synchronized (this) {
+      CanonicalCode cached = this.codes.putIfAbsent(key, built);
+      if (this.codes.size() > this.capacity) {
+        this.codes.remove(this.codes.keySet().iterator().next());
+      }
+      return cached == null ? built : cached;
+    }
+  }
+
+  // returns the number of codes cached
+  synchronized int size() {
+    return this.codes.size();
+  }
+}
+
+//to represent the symbols and frequencies of a huffman as a cache key, compared by value
+class FrequencyKey {
+  int[] symbols;
+  int[] freq;
+  int hash;
+
+  FrequencyKey(int[] symbols, int[] freq) {
+    this.symbols = symbols.clone();
+    this.freq = freq.clone();
+    this.hash = 31 * Arrays.hashCode(this.symbols) + Arrays.hashCode(this.freq);
+  }
+
+  // returns true if the given object is a key with the same symbols and frequencies
+  public boolean equals(Object other) {
+    if (!(other instanceof FrequencyKey)) {
+      return false;
+    }
+    FrequencyKey that = (FrequencyKey) other;
+    return this.hash == that.hash && Arrays.equals(this.symbols, that.symbols)
+        && Arrays.equals(this.freq, that.freq);
+  }
+
+  // returns a hash of the symbols and frequencies
+  public int hashCode() {
+    return this.hash;
+  }
+}
+
+//to represent the best code lengths for some weighted symbols when no code may be longer
+//than maxLength bits, found with the package-merge algorithm
+//each level from maxLength up to 1 is the symbols merged with the pairs ("packages") of
+//the level below, in order of weight; the lightest 2n - 2 items of level 1 are chosen,
+//and a symbol's code length is how many chosen items it appears in, counting the items
+//inside chosen packages
+class PackageMerge {
+  int[] symbols;
+  long[] weights;
+  int maxLength;
+  // the code length of each symbol, in the same order as the symbols
+  int[] lengths;
+
+  PackageMerge(int[] symbols, long[] weights, int maxLength) {
+    if (symbols.length != weights.length) {
+      throw new IllegalArgumentException("Lists are not same size");
+    }
+    if (symbols.length < 2) {
+      throw new IllegalArgumentException("Lists sizes are not greater than 1");
+    }
+    if (maxLength < 1 || maxLength > 64
+        || (maxLength < 31 && symbols.length > (1 << maxLength))) {
+      throw new IllegalArgumentException("Max length is too small for this many symbols");
+    }
+    this.symbols = symbols;
+    this.weights = weights;
+    this.maxLength = maxLength;
+    this.lengths = new int[symbols.length];
+    this.merge();
+  }
+
+  // EFFECT: sets the code length of every symbol
+  void merge() {
+    int count = this.symbols.length;
+    // the symbol indexes in order of weight
+    Integer[] order = new Integer[count];
+    for (int idx = 0; idx < count; idx++) {
+      order[idx] = idx;
+    }
+    Arrays.sort(order, new WeightCompare(this.weights));
+    long[] sorted = new long[count];
+    for (int idx = 0; idx < count; idx++) {
+      sorted[idx] = this.weights[order[idx]];
+    }
+    // the weights of each level, and whether each item is a symbol or a package
+    long[][] levelWeights = new long[this.maxLength + 1][];
+    boolean[][] isSymbol = new boolean[this.maxLength + 1][];
+    levelWeights[this.maxLength] = sorted;
+    isSymbol[this.maxLength] = new boolean[count];
+    Arrays.fill(isSymbol[this.maxLength], true);
+    for (int level = this.maxLength - 1; level >= 1; level--) {
+      long[] below = levelWeights[level + 1];
+      int packages = below.length / 2;
+      levelWeights[level] = new long[count + packages];
+      isSymbol[level] = new boolean[count + packages];
+      int symbolIdx = 0;
+      int packageIdx = 0;
+      for (int idx = 0; idx < count + packages; idx++) {
+        long packageWeight = packageIdx < packages
+            ? below[2 * packageIdx] + below[2 * packageIdx + 1] : Long.MAX_VALUE;
+        if (symbolIdx < count && sorted[symbolIdx] <= packageWeight) {
+          levelWeights[level][idx] = sorted[symbolIdx];
+          isSymbol[level][idx] = true;
+          symbolIdx += 1;
+        }
+        else {
+          levelWeights[level][idx] = packageWeight;
+          packageIdx += 1;
+        }
+      }
+    }
+    // walk back down: the chosen symbols of a level each add a bit to their codes, and
+    // the chosen packages choose twice as many items from the level below
+    int chosen = 2 * count - 2;
+    for (int level = 1; level <= this.maxLength && chosen > 0; level++) {
+      int symbolsChosen = 0;
+      for (int idx = 0; idx < chosen; idx++) {
+        if (isSymbol[level][idx]) {
+          this.lengths[order[symbolsChosen]] += 1;
+          symbolsChosen += 1;
+        }
+      }
+      chosen = 2 * (chosen - symbolsChosen);
+    }
+  }
+
+  // returns the code lengths indexed by symbol, as CanonicalCode takes them
+  int[] codeLengths() {
+    int maxSymbol = 0;
+    for (int symbol : this.symbols) {
+      maxSymbol = Math.max(maxSymbol, symbol);
+    }
+    int[] codeLengths = new int[maxSymbol + 1];
+    for (int idx = 0; idx < this.symbols.length; idx++) {
+      codeLengths[this.symbols[idx]] = this.lengths[idx];
+    }
+    return codeLengths;
+  }
+}
+
+//to represent comparing symbol indexes by the weights of their symbols
+class WeightCompare implements Comparator<Integer> {
+  long[] weights;
+
+  WeightCompare(long[] weights) {
+    this.weights = weights;
+  }
+
+  // to compare the weights of two symbol indexes
+  public int compare(Integer o1, Integer o2) {
+    return Long.compare(this.weights[o1], this.weights[o2]);
+  }
+}
+
+//to represent a table that decodes a whole code from the next tableBits bits at once,
+//falling back to walking the tree for codes longer than that
+class DecodeTable {
+  // the widest table built, so it stays small enough to sit in cache
+  static final int MAX_TABLE_BITS = 11;
+  // the number of low bits a packed symbol and index keep the symbol in, enough for
+  // any code point
+  static final int SYMBOL_BITS = 21;
+
+  int tableBits;
+  // for each tableBits-bit prefix: the symbol whose code it starts with and that
+  // code's length, or a length of 0 if the code is longer than the table
+  int[] symbols;
+  byte[] lengths;
+  // for each prefix of a longer code, the subtree reached after tableBits bits
+  Tree[] subtrees;
+
+  DecodeTable(Tree tree, int tableBits) {
+    if (tableBits < 1 || tableBits > 30) {
+      throw new IllegalArgumentException("Table bits must be between 1 and 30");
+    }
+    this.tableBits = tableBits;
+    this.symbols = new int[1 << tableBits];
+    this.lengths = new byte[1 << tableBits];
+    this.subtrees = new Tree[1 << tableBits];
+    tree.fillTable(this, 0, 0);
+  }
+
+  // returns the given symbol and the index after its code packed into one long, so
+  // decoding a symbol allocates nothing
+  static long pack(int symbol, long idx) {
+    return (idx << SYMBOL_BITS) | symbol;
+  }
+
+  // EFFECT: points every prefix that starts with the given code (depth bits long) at
+  // the given symbol
+  void addSymbol(int symbol, int path, int depth) {
+    int first = path << (this.tableBits - depth);
+    int last = first + (1 << (this.tableBits - depth));
+    Arrays.fill(this.symbols, first, last, symbol);
+    Arrays.fill(this.lengths, first, last, (byte) depth);
+  }
+
+  // EFFECT: points the given prefix at the subtree its longer codes continue in
+  void addSubtree(Tree subtree, int path) {
+    this.subtrees[path] = subtree;
+  }
+
+  // returns the letters of the given packed bits, ending with "?" if the last code
+  // is cut off
+  String decode(BitBuffer encoded) {
+    StringBuilder decoded = new StringBuilder();
+    this.decode(encoded, 0, encoded.size(), decoded);
+    return decoded.toString();
+  }
+
+  // returns the symbol whose code starts at idx, packed with the index just past the
+  // code, or -1 if the code is cut off at to
+  long next(BitBuffer encoded, long idx, long to) {
+    int prefix = (int) encoded.peek(idx, this.tableBits);
+    int length = this.lengths[prefix];
+    if (length > 0 && idx + length <= to) {
+      return DecodeTable.pack(this.symbols[prefix], idx + length);
+    }
+    else if (length == 0 && idx + this.tableBits <= to) {
+      return this.subtrees[prefix].walk(encoded, idx + this.tableBits, to);
+    }
+    else {
+      return -1;
+    }
+  }
+
+  // EFFECT: appends the letters of the given packed bits from index from up to index
+  // to onto decoded, ending with "?" if the last code is cut off
+  void decode(BitBuffer encoded, long from, long to, StringBuilder decoded) {
+    long idx = from;
+    while (idx < to) {
+      long next = this.next(encoded, idx, to);
+      if (next < 0) {
+        decoded.append("?");
+        return;
+      }
+      decoded.appendCodePoint((int) (next & ((1 << SYMBOL_BITS) - 1)));
+      idx = next >>> SYMBOL_BITS;
+    }
+  }
+
+  // returns the symbols of the given packed bits from index from up to index to
+  int[] decodeSymbols(BitBuffer encoded, long from, long to) {
+    int[] decoded = new int[16];
+    int count = 0;
+    long idx = from;
+    while (idx < to) {
+      long next = this.next(encoded, idx, to);
+      if (next < 0) {
+        throw new IllegalArgumentException("Encoded bits end partway through a code");
+      }
+      if (count == decoded.length) {
+        decoded = Arrays.copyOf(decoded, count * 2);
+      }
+      decoded[count] = (int) (next & ((1 << SYMBOL_BITS) - 1));
+      count += 1;
+      idx = next >>> SYMBOL_BITS;
+    }
+    return Arrays.copyOf(decoded, count);
+  }
+
+  // returns the byte symbols of the given packed bits from index from up to index to
+  byte[] decodeBytes(BitBuffer encoded, long from, long to) {
+    byte[] decoded = new byte[16];
+    int count = 0;
+    long idx = from;
+    while (idx < to) {
+      long next = this.next(encoded, idx, to);
+      if (next < 0) {
+        throw new IllegalArgumentException("Encoded bits end partway through a code");
+      }
+      int symbol = (int) (next & ((1 << SYMBOL_BITS) - 1));
+      if (symbol > 255) {
+        throw new IllegalArgumentException("Decoded a symbol that is not a byte");
+      }
+      if (count == decoded.length) {
+        decoded = Arrays.copyOf(decoded, count * 2);
+      }
+      decoded[count] = (byte) symbol;
+      count += 1;
+      idx = next >>> SYMBOL_BITS;
+    }
+    return Arrays.copyOf(decoded, count);
+  }
+}
+
+//to represent a packed sequence of bits, 64 to a long, with the first bit of each
+//word in its highest place
+class BitBuffer {
+  long[] words;
+  // the number of bits in use; every bit past it is kept 0
+  long length;
+
+  BitBuffer() {
+    this.words = new long[1];
+    this.length = 0;
+  }
+
+  BitBuffer(long[] words, long length) {
+    if (length < 0 || length > words.length * 64L) {
+      throw new IllegalArgumentException("Given length does not fit in the given words");
+    }
+    this.words = words;
+    this.length = length;
+    this.clearTail();
+  }
+
+  BitBuffer(byte[] bytes, long length) {
+    this(new long[(bytes.length + 7) / 8], length);
+    for (int idx = 0; idx < bytes.length; idx++) {
+      this.words[idx >>> 3] |= (bytes[idx] & 0xFFL) << (56 - 8 * (idx & 7));
+    }
+    this.clearTail();
+  }
+
+  BitBuffer(ArrayList<Boolean> bits) {
+    this(new long[bits.size() / 64 + 1], 0);
+    for (boolean bit : bits) {
+      this.append(bit ? 1 : 0, 1);
+    }
+  }
+
+  // returns the number of bits in this buffer
+  long size() {
+    return this.length;
+  }
+
+  // returns the bit at the given index
+  boolean get(long idx) {
+    if (idx < 0 || idx >= this.length) {
+      throw new IllegalArgumentException("Given index is out of bounds");
+    }
+    return ((this.words[(int) (idx >>> 6)] >>> (63 - (idx & 63))) & 1) == 1;
+  }
+
+  // returns the count (1 to 64) bits starting at idx as the low bits of a long,
+  // reading 0s past the end
+  long peek(long idx, int count) {
+    int word = (int) (idx >>> 6);
+    int offset = (int) (idx & 63);
+    long high = word < this.words.length ? this.words[word] << offset : 0;
+    if (offset > 0 && word + 1 < this.words.length) {
+      high |= this.words[word + 1] >>> (64 - offset);
+    }
+    return high >>> (64 - count);
+  }
+
+  // EFFECT: appends the lowest count (0 to 64) bits of the given bits, highest
+  // first
+  void append(long bits, int count) {
+    if (count == 0) {
+      return;
+    }
+    if (count < 64) {
+      bits &= (1L << count) - 1;
+    }
+    this.ensureCapacity(this.length + count);
+    int word = (int) (this.length >>> 6);
+    int free = 64 - (int) (this.length & 63);
+    if (count <= free) {
+      this.words[word] |= bits << (free - count);
+    }
+    else {
+      this.words[word] |= bits >>> (count - free);
+      this.words[word + 1] |= bits << (64 - (count - free));
+    }
+    this.length += count;
+  }
+
+  // EFFECT: appends all of the given bits, a word at a time
+  void append(BitBuffer other) {
+    this.ensureCapacity(this.length + other.length);
+    int fullWords = (int) (other.length >>> 6);
+    for (int word = 0; word < fullWords; word++) {
+      this.append(other.words[word], 64);
+    }
+    int rest = (int) (other.length & 63);
+    if (rest > 0) {
+      this.append(other.words[fullWords] >>> (64 - rest), rest);
+    }
+  }
+
+  // EFFECT: removes every bit, keeping the words for reuse
+  void clear() {
+    Arrays.fill(this.words, 0, (int) Math.min(this.words.length, (this.length + 63) >>> 6), 0);
+    this.length = 0;
+  }
+
+  // EFFECT: grows the words so they can hold at least the given number of bits
+  void ensureCapacity(long bits) {
+    long needed = (bits + 63) >>> 6;
+    if (needed > this.words.length) {
+      this.words = Arrays.copyOf(this.words, (int) Math.max(needed, this.words.length * 2L));
+    }
+  }
+
+  // EFFECT: sets every bit past the length to 0
+  void clearTail() {
+    int word = (int) (this.length >>> 6);
+    if (word < this.words.length) {
+      int used = (int) (this.length & 63);
+      this.words[word] &= used == 0 ? 0 : -1L << (64 - used);
+      Arrays.fill(this.words, word + 1, this.words.length, 0);
+    }
+  }
+
+  // returns the bits as bytes, first bit highest, with the last byte padded with 0s
+  byte[] toByteArray() {
+    byte[] bytes = new byte[(int) ((this.length + 7) >>> 3)];
+    for (int idx = 0; idx < bytes.length; idx++) {
+      bytes[idx] = (byte) (this.words[idx >>> 3] >>> (56 - 8 * (idx & 7)));
+    }
+    return bytes;
+  }
+
+  // returns the bits as a list of booleans
+  ArrayList<Boolean> toBooleanList() {
+    ArrayList<Boolean> bits = new ArrayList<Boolean>();
+    for (long idx = 0; idx < this.length; idx++) {
+      bits.add(this.get(idx));
+    }
+    return bits;
+  }
+}
+
+//to represent coding bytes straight between caller-supplied ByteBuffers, heap or direct,
+//with no copy onto the heap: bytes are read from the input's position to its limit, and
+//the packed bits (first bit highest, the last byte padded with 0s) are put at the
+//output's position
+//bits are read with absolute gets from a big-endian view of the input, so the caller's
+//buffer order and position are only changed by the bytes consumed
+class DirectCoding {
+  // returns the number of bits the codes of the bytes from in's position to its limit
+  // take, putting the packed bits into out
+  // throws a BufferOverflowException if out fills first
+  static long encode(long[] codeBits, int[] codeLengths, ByteBuffer in, ByteBuffer out) {
+    // the bits not yet put, in the lowest pending places of acc; pending stays under 8
+    // between codes, so adding up to 32 more bits at a time always fits
+    long acc = 0;
+    int pending = 0;
+    long bitCount = 0;
+    while (in.hasRemaining()) {
+      int symbol = in.get() & 0xFF;
+      if (symbol >= codeLengths.length || codeLengths[symbol] == 0) {
+        throw new IllegalArgumentException("Tried to encode " + (char) symbol
+            + " but that is not part of the language.");
+      }
+      int length = codeLengths[symbol];
+      long code = codeBits[symbol];
+      bitCount += length;
+      if (length > 32) {
+        acc = (acc << (length - 32)) | (code >>> 32);
+        pending += length - 32;
+        while (pending >= 8) {
+          pending -= 8;
+          out.put((byte) (acc >>> pending));
+        }
+        length = 32;
+      }
+      acc = (acc << length) | (code & ((1L << length) - 1));
+      pending += length;
+      while (pending >= 8) {
+        pending -= 8;
+        out.put((byte) (acc >>> pending));
+      }
+    }
+    if (pending > 0) {
+      out.put((byte) (acc << (8 - pending)));
+    }
+    return bitCount;
+  }
+
+  // returns the 64 bits starting bitIdx bits after byte start of the given big-endian
+  // buffer, reading 0s past byte end
+  static long peek(ByteBuffer in, int start, int end, long bitIdx) {
+    int byteIdx = start + (int) (bitIdx >>> 3);
+    int shift = (int) (bitIdx & 7);
+    long word = 0;
+    if (byteIdx + 8 <= end) {
+      word = in.getLong(byteIdx);
+    }
+    else {
+      for (int idx = byteIdx; idx < byteIdx + 8; idx++) {
+        word = (word << 8) | (idx < end ? in.get(idx) & 0xFF : 0);
+      }
+    }
+    if (shift > 0) {
+      int last = byteIdx + 8 < end ? in.get(byteIdx + 8) & 0xFF : 0;
+      word = (word << shift) | (last >>> (8 - shift));
+    }
+    return word;
+  }
+
+  // returns the number of bytes decoded from the first bitCount bits at in's position,
+  // putting them into out and moving in's position past the bytes the bits take
+  static int decode(DecodeTable table, ByteBuffer in, long bitCount, ByteBuffer out) {
+    if (bitCount < 0 || (bitCount + 7) >>> 3 > in.remaining()) {
+      throw new IllegalArgumentException("Bit count is out of range");
+    }
+    ByteBuffer bytes = in.duplicate().order(ByteOrder.BIG_ENDIAN);
+    int start = in.position();
+    int end = start + (int) ((bitCount + 7) >>> 3);
+    int count = 0;
+    long idx = 0;
+    while (idx < bitCount) {
+      long window = DirectCoding.peek(bytes, start, end, idx);
+      int prefix = (int) (window >>> (64 - table.tableBits));
+      int length = table.lengths[prefix];
+      int symbol;
+      if (length > 0) {
+        symbol = table.symbols[prefix];
+      }
+      else {
+        long walked = table.subtrees[prefix].walk(window << table.tableBits,
+            64 - table.tableBits, table.tableBits);
+        symbol = (int) (walked & ((1 << DecodeTable.SYMBOL_BITS) - 1));
+        length = walked < 0 ? 65 : (int) (walked >>> DecodeTable.SYMBOL_BITS);
+      }
+      if (idx + length > bitCount) {
+        throw new IllegalArgumentException("Encoded bits end partway through a code");
+      }
+      if (symbol > 255) {
+        throw new IllegalArgumentException("Decoded a symbol that is not a byte");
+      }
+      out.put((byte) symbol);
+      count += 1;
+      idx += length;
+    }
+    in.position(end);
+    return count;
+  }
+}
+
+//to represent an output stream that codes the bytes written to it a block at a time, so
+//data of any size is compressed in a fixed amount of memory
+//the stream starts with the block size, then each block is its bit count followed by its
+//packed bits, and a bit count of 0 ends the stream; subclasses say how a block is coded
+abstract class ABlockOutputStream extends OutputStream {
+  DataOutputStream out;
+  // the bytes of the current block, and how many of them were written
+  byte[] block;
+  int blockLength;
+  BitBuffer encoded;
+  boolean closed;
+
+  ABlockOutputStream(OutputStream out, int blockSize, int maxCodeLength) throws IOException {
+    if (blockSize < 1 || blockSize > ABlockOutputStream.maxBlockSize(maxCodeLength)) {
+      throw new IllegalArgumentException("Block size is out of range");
+    }
+    this.out = new DataOutputStream(out);
+    this.block = new byte[blockSize];
+    this.blockLength = 0;
+    this.encoded = new BitBuffer();
+    this.closed = false;
+    this.out.writeInt(blockSize);
+  }
+
+  // returns the largest block size whose bit count fits in an int when every byte is
+  // coded with up to the given number of bits
+  static int maxBlockSize(int maxCodeLength) {
+    return Integer.MAX_VALUE / maxCodeLength;
+  }
+
+  // EFFECT: codes the first length bytes of the given block onto the end of encoded
+  abstract void encodeBlock(byte[] block, int length, BitBuffer encoded);
+
+  // EFFECT: adds the given byte to the current block, writing the block if it fills
+  public void write(int b) throws IOException {
+    this.block[this.blockLength] = (byte) b;
+    this.blockLength += 1;
+    if (this.blockLength == this.block.length) {
+      this.writeBlock();
+    }
+  }
+
+  // EFFECT: adds the given bytes to the current block, writing every block that fills
+  public void write(byte[] bytes, int off, int len) throws IOException {
+    while (len > 0) {
+      int count = Math.min(len, this.block.length - this.blockLength);
+      System.arraycopy(bytes, off, this.block, this.blockLength, count);
+      this.blockLength += count;
+      off += count;
+      len -= count;
+      if (this.blockLength == this.block.length) {
+        this.writeBlock();
+      }
+    }
+  }
+
+  // EFFECT: codes the current block, if it has anything in it, and writes it out
+  void writeBlock() throws IOException {
+    if (this.blockLength > 0) {
+      this.encoded.clear();
+      this.encodeBlock(this.block, this.blockLength, this.encoded);
+      this.blockLength = 0;
+      this.out.writeInt((int) this.encoded.size());
+      this.out.write(this.encoded.toByteArray());
+    }
+  }
+
+  // EFFECT: writes out the current block, so everything written so far can be decoded
+  public void flush() throws IOException {
+    this.writeBlock();
+    this.out.flush();
+  }
+
+  // EFFECT: writes out the current block and the end of the stream, then closes the
+  // underlying stream
+  public void close() throws IOException {
+    if (!this.closed) {
+      this.closed = true;
+      this.writeBlock();
+      this.out.writeInt(0);
+      this.out.close();
+    }
+  }
+}
+
+//to represent an input stream that decodes what an ABlockOutputStream wrote, one block at
+//a time; subclasses say how a block is decoded
+//blocks are only accepted up to the block size the stream was written with, and a reader
+//can refuse streams whose block size is over a maximum of its own to bound its memory
+abstract class ABlockInputStream extends InputStream {
+  DataInputStream in;
+  // the largest block bit count accepted, so a corrupt count can't exhaust memory
+  long maxBlockBits;
+  // the decoded bytes of the current block, and how many of them were read
+  byte[] block;
+  int blockIdx;
+  boolean ended;
+
+  ABlockInputStream(InputStream in, int maxBlockSize, int maxCodeLength) throws IOException {
+    if (maxBlockSize < 1 || maxBlockSize > ABlockOutputStream.maxBlockSize(maxCodeLength)) {
+      throw new IllegalArgumentException("Block size is out of range");
+    }
+    this.in = new DataInputStream(in);
+    this.block = new byte[0];
+    this.blockIdx = 0;
+    this.ended = false;
+    int blockSize = this.in.readInt();
+    if (blockSize < 1 || blockSize > maxBlockSize) {
+      throw new IOException("Stream has an invalid block size");
+    }
+    this.maxBlockBits = (long) blockSize * maxCodeLength;
+  }
+
+  // returns the bytes decoded from all the bits of the given block
+  // throws IllegalArgumentException if the bits are not a valid block
+  abstract byte[] decodeBlock(BitBuffer encoded);
+
+  // returns the next decoded byte, or -1 at the end of the stream
+  public int read() throws IOException {
+    if (!this.fillBlock()) {
+      return -1;
+    }
+    this.blockIdx += 1;
+    return this.block[this.blockIdx - 1] & 0xFF;
+  }
+
+  // EFFECT: reads up to len decoded bytes into the given bytes
+  // returns how many were read, or -1 at the end of the stream
+  public int read(byte[] bytes, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!this.fillBlock()) {
+      return -1;
+    }
+    int count = Math.min(len, this.block.length - this.blockIdx);
+    System.arraycopy(this.block, this.blockIdx, bytes, off, count);
+    this.blockIdx += count;
+    return count;
+  }
+
+  // returns the number of decoded bytes left in the current block
+  public int available() {
+    return this.block.length - this.blockIdx;
+  }
+
+  // EFFECT: decodes the next block if the current one has been read
+  // returns false if there are no bytes left in the stream
+  boolean fillBlock() throws IOException {
+    while (this.blockIdx == this.block.length && !this.ended) {
+      int bitCount = this.in.readInt();
+      if (bitCount == 0) {
+        this.ended = true;
+      }
+      else if (bitCount < 0 || bitCount > this.maxBlockBits) {
+        throw new IOException("Stream has a corrupt block");
+      }
+      else {
+        byte[] packed = new byte[(bitCount + 7) >>> 3];
+        this.in.readFully(packed);
+        try {
+          this.block = this.decodeBlock(new BitBuffer(packed, bitCount));
+        }
+        catch (IllegalArgumentException e) {
+          throw new IOException("Stream has a corrupt block");
+        }
+        this.blockIdx = 0;
+      }
+    }
+    return this.blockIdx < this.block.length;
+  }
+
+  // EFFECT: closes the underlying stream
+  public void close() throws IOException {
+    this.in.close();
+  }
+}
+
+//to represent an output stream that huffman encodes every byte written to it with a fixed
+//code, writing the code's header before the first block
+class HuffmanOutputStream extends ABlockOutputStream {
+  // the number of bytes encoded as one block unless told otherwise
+  static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+  // the longest code a CanonicalCode can have
+  static final int MAX_CODE_LENGTH = 64;
+
+  CanonicalCode code;
+
+  HuffmanOutputStream(CanonicalCode code, OutputStream out, int blockSize) throws IOException {
+    super(out, blockSize, MAX_CODE_LENGTH);
+    this.code = code;
+    byte[] header = code.header();
+    this.out.writeInt(header.length);
+    this.out.write(header);
+  }
+
+  HuffmanOutputStream(CanonicalCode code, OutputStream out) throws IOException {
+    this(code, out, DEFAULT_BLOCK_SIZE);
+  }
+
+  HuffmanOutputStream(CanonicalCode code, WritableByteChannel channel) throws IOException {
+    this(code, Channels.newOutputStream(channel));
+  }
+
+  // EFFECT: encodes the first length bytes of the given block onto the end of encoded
+  void encodeBlock(byte[] block, int length, BitBuffer encoded) {
+    this.code.encode(block, length, encoded);
+  }
+}
+
+//to represent an input stream that decodes what a HuffmanOutputStream wrote, using the
+//code read from its header
+class HuffmanInputStream extends ABlockInputStream {
+  CanonicalCode code;
+
+  HuffmanInputStream(InputStream in, int maxBlockSize) throws IOException {
+    super(in, maxBlockSize, HuffmanOutputStream.MAX_CODE_LENGTH);
+    int headerLength = this.in.readInt();
+    if (headerLength < 0 || headerLength > 5 + (Character.MAX_CODE_POINT + 1) * 4) {
+      throw new IOException("Stream has an invalid header length");
+    }
+    byte[] header = new byte[headerLength];
+    this.in.readFully(header);
+    try {
+      this.code = new CanonicalCode(header);
+    }
+    catch (IllegalArgumentException e) {
+      throw new IOException("Stream has an invalid header");
+    }
+  }
+
+  HuffmanInputStream(InputStream in) throws IOException {
+    this(in, ABlockOutputStream.maxBlockSize(HuffmanOutputStream.MAX_CODE_LENGTH));
+  }
+
+  HuffmanInputStream(ReadableByteChannel channel) throws IOException {
+    this(Channels.newInputStream(channel));
+  }
+
+  // returns the bytes decoded from all the bits of the given block
+  byte[] decodeBlock(BitBuffer encoded) {
+    return this.code.decodeBytes(encoded);
+  }
+}
+
+//to represent a byte model that learns as it codes: every byte starts with a count of 1,
+//each coded byte adds to its count, and the code is rebuilt from the counts after every
+//interval bytes, so an encoder and a decoder that see the same bytes always hold the
+//same code and no table is ever sent
+//the interval doubles from FIRST_INTERVAL up to maxInterval so the code settles quickly
+//but rebuilds stay rare, and the counts are halved whenever their total passes MAX_TOTAL
+//so the model keeps following data whose mix changes over time
+class AdaptiveModel {
+  // the number of bytes coded before the first rebuild
+  static final int FIRST_INTERVAL = 16;
+  // the most bytes coded between rebuilds unless told otherwise
+  static final int DEFAULT_MAX_INTERVAL = 1 << 12;
+  // the total count that makes the counts halve
+  static final long MAX_TOTAL = 1 << 16;
+
+  int[] symbols;
+  long[] counts;
+  long total;
+  int interval;
+  int maxInterval;
+  int untilRebuild;
+  // always limited to DecodeTable.MAX_TABLE_BITS bits, so every byte decodes in one
+  // table lookup
+  CanonicalCode code;
+
+  AdaptiveModel(int maxInterval) {
+    if (maxInterval < 1) {
+      throw new IllegalArgumentException("Rebuild interval must be positive");
+    }
+    this.symbols = new int[256];
+    this.counts = new long[256];
+    for (int symbol = 0; symbol < 256; symbol++) {
+      this.symbols[symbol] = symbol;
+      this.counts[symbol] = 1;
+    }
+    this.total = 256;
+    this.maxInterval = maxInterval;
+    this.interval = Math.min(FIRST_INTERVAL, maxInterval);
+    this.untilRebuild = this.interval;
+    this.rebuild();
+  }
+
+  AdaptiveModel() {
+    this(DEFAULT_MAX_INTERVAL);
+  }
+
+  // EFFECT: rebuilds the code from the current counts
+  void rebuild() {
+    this.code = new CanonicalCode(
+        new PackageMerge(this.symbols, this.counts, DecodeTable.MAX_TABLE_BITS).codeLengths());
+  }
+
+  // EFFECT: counts the given byte symbol, halving the counts and rebuilding the code
+  // when it is time to
+  void update(int symbol) {
+    this.counts[symbol] += 1;
+    this.total += 1;
+    if (this.total > MAX_TOTAL) {
+      this.total = 0;
+      for (int idx = 0; idx < 256; idx++) {
+        this.counts[idx] = (this.counts[idx] + 1) / 2;
+        this.total += this.counts[idx];
+      }
+    }
+    this.untilRebuild -= 1;
+    if (this.untilRebuild == 0) {
+      this.rebuild();
+      this.interval = Math.min(this.interval * 2, this.maxInterval);
+      this.untilRebuild = this.interval;
+    }
+  }
+
+  // EFFECT: appends the code of the given byte symbol to the given bits, then counts it
+  void encode(int symbol, BitBuffer encoded) {
+    this.code.encodeSymbol(symbol, encoded);
+    this.update(symbol);
+  }
+
+  // EFFECT: appends the codes of the bytes from index off up to index off + len to the
+  // given bits, counting each one after it is coded
+  void encode(byte[] bytes, int off, int len, BitBuffer encoded) {
+    for (int idx = off; idx < off + len; idx++) {
+      this.encode(bytes[idx] & 0xFF, encoded);
+    }
+  }
+
+  // EFFECT: counts the decoded bytes the same way the encoder counted them
+  // returns the bytes of the given packed bits from index from up to index to
+  byte[] decodeBytes(BitBuffer encoded, long from, long to) {
+    byte[] decoded = new byte[16];
+    int count = 0;
+    long idx = from;
+    while (idx < to) {
+      long next = this.code.decodeTable.next(encoded, idx, to);
+      if (next < 0) {
+        throw new IllegalArgumentException("Encoded bits end partway through a code");
+      }
+      int symbol = (int) (next & ((1 << DecodeTable.SYMBOL_BITS) - 1));
+      if (count == decoded.length) {
+        decoded = Arrays.copyOf(decoded, count * 2);
+      }
+      decoded[count] = (byte) symbol;
+      count += 1;
+      idx = next >>> DecodeTable.SYMBOL_BITS;
+      this.update(symbol);
+    }
+    return Arrays.copyOf(decoded, count);
+  }
+}
+
+//to represent an output stream that codes every byte written to it with an adaptive model,
+//so a live stream is compressed in one pass with no header
+class AdaptiveOutputStream extends ABlockOutputStream {
+  AdaptiveModel model;
+
+  AdaptiveOutputStream(OutputStream out, int blockSize) throws IOException {
+    super(out, blockSize, DecodeTable.MAX_TABLE_BITS);
+    this.model = new AdaptiveModel();
+  }
+
+  AdaptiveOutputStream(OutputStream out) throws IOException {
+    this(out, HuffmanOutputStream.DEFAULT_BLOCK_SIZE);
+  }
+
+  AdaptiveOutputStream(WritableByteChannel channel) throws IOException {
+    this(Channels.newOutputStream(channel));
+  }
+
+  // EFFECT: codes the first length bytes of the given block onto the end of encoded,
+  // updating the model as it goes
+  void encodeBlock(byte[] block, int length, BitBuffer encoded) {
+    this.model.encode(block, 0, length, encoded);
+  }
+}
+
+//to represent an input stream that decodes what an AdaptiveOutputStream wrote, rebuilding
+//the same model from the decoded bytes
+class AdaptiveInputStream extends ABlockInputStream {
+  AdaptiveModel model;
+
+  AdaptiveInputStream(InputStream in, int maxBlockSize) throws IOException {
+    super(in, maxBlockSize, DecodeTable.MAX_TABLE_BITS);
+    this.model = new AdaptiveModel();
+  }
+
+  AdaptiveInputStream(InputStream in) throws IOException {
+    this(in, ABlockOutputStream.maxBlockSize(DecodeTable.MAX_TABLE_BITS));
+  }
+
+  AdaptiveInputStream(ReadableByteChannel channel) throws IOException {
+    this(Channels.newInputStream(channel));
+  }
+
+  // returns the bytes decoded from all the bits of the given block, updating the model as
+  // it goes
+  byte[] decodeBlock(BitBuffer encoded) {
+    return this.model.decodeBytes(encoded, 0, encoded.size());
+  }
+}
+
+//to represent how many times each byte value appears in some data, counted in parallel
+//so the huffman model can be built straight from the data
+class ByteHistogram {
+  // the most bytes of a file mapped and counted at once
+  static final long FILE_REGION_SIZE = 1L << 30;
+
+  // how many times each byte value (0 to 255) appears
+  long[] counts;
+
+  ByteHistogram() {
+    this.counts = new long[256];
+  }
+
+  ByteHistogram(byte[] bytes) {
+    this(ByteBuffer.wrap(bytes));
+  }
+
+  ByteHistogram(ByteBuffer buffer) {
+    this();
+    this.add(buffer);
+  }
+
+  ByteHistogram(Path file) throws IOException {
+    this();
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      long size = channel.size();
+      for (long start = 0; start < size; start += FILE_REGION_SIZE) {
+        this.add(channel.map(FileChannel.MapMode.READ_ONLY, start,
+            Math.min(FILE_REGION_SIZE, size - start)));
+      }
+    }
+    finally {
+      channel.close();
+    }
+  }
+
+  // EFFECT: adds the counts of the bytes from the given buffer's position to its
+  // limit, split into about four chunks per core
+  void add(ByteBuffer buffer) {
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    int chunkSize = Math.max(CountTask.MIN_CHUNK_SIZE,
+        buffer.remaining() / (pool.getParallelism() * 4) + 1);
+    this.add(pool.invoke(new CountTask(buffer, buffer.position(), buffer.limit(), chunkSize)));
+  }
+
+  // EFFECT: adds the given counts to these counts
+  void add(long[] otherCounts) {
+    for (int value = 0; value < 256; value++) {
+      this.counts[value] += otherCounts[value];
+    }
+  }
+
+  // returns the total number of bytes counted
+  long total() {
+    long total = 0;
+    for (long count : this.counts) {
+      total += count;
+    }
+    return total;
+  }
+
+  // returns a huffman over the byte values that appeared, each as the letter with the
+  // same value, with counts scaled down if needed so the total fits in an int
+  // adds unused byte values with a count of 0 if needed so there are at least 2, so data
+  // with one or no distinct bytes still gets a code
+  Huffman toHuffman() {
+    long divisor = this.total() / (Integer.MAX_VALUE - 256) + 1;
+    boolean[] kept = new boolean[256];
+    int keptCount = 0;
+    for (int value = 0; value < 256; value++) {
+      kept[value] = this.counts[value] > 0;
+      keptCount += kept[value] ? 1 : 0;
+    }
+    for (int value = 0; value < 256 && keptCount < 2; value++) {
+      if (!kept[value]) {
+        kept[value] = true;
+        keptCount += 1;
+      }
+    }
+    ArrayList<String> letters = new ArrayList<String>();
+    ArrayList<Integer> freq = new ArrayList<Integer>();
+    for (int value = 0; value < 256; value++) {
+      if (kept[value]) {
+        letters.add(String.valueOf((char) value));
+        freq.add(this.counts[value] > 0 ? (int) Math.max(1, this.counts[value] / divisor) : 0);
+      }
+    }
+    return new Huffman(letters, freq);
+  }
+}
+
+//to represent counting the byte values in part of a buffer, splitting it in half until
+//each part is at most chunkSize bytes long
+class CountTask extends RecursiveTask<long[]> {
+  private static final long serialVersionUID = 1L;
+
+  // the smallest chunk worth giving its own task
+  static final int MIN_CHUNK_SIZE = 1 << 16;
+
+  ByteBuffer buffer;
+  int from;
+  int to;
+  int chunkSize;
+
+  CountTask(ByteBuffer buffer, int from, int to, int chunkSize) {
+    this.buffer = buffer;
+    this.from = from;
+    this.to = to;
+    this.chunkSize = chunkSize;
+  }
+
+  // returns how many times each byte value appears from this.from up to this.to
+  protected long[] compute() {
+    if (this.to - this.from <= this.chunkSize) {
+      return this.countChunk();
+    }
+    int mid = (this.from + this.to) >>> 1;
+    CountTask left = new CountTask(this.buffer, this.from, mid, this.chunkSize);
+    left.fork();
+    long[] counts = new CountTask(this.buffer, mid, this.to, this.chunkSize).compute();
+    long[] leftCounts = left.join();
+    for (int value = 0; value < 256; value++) {
+      counts[value] += leftCounts[value];
+    }
+    return counts;
+  }
+
+  // returns how many times each byte value appears in this chunk, counted into ints
+  // since a chunk is never longer than an int can count
+  long[] countChunk() {
+    int[] intCounts = new int[256];
+    if (this.buffer.hasArray()) {
+      byte[] bytes = this.buffer.array();
+      int offset = this.buffer.arrayOffset();
+      for (int idx = this.from + offset; idx < this.to + offset; idx++) {
+        intCounts[bytes[idx] & 0xFF] += 1;
+      }
+    }
+    else {
+      for (int idx = this.from; idx < this.to; idx++) {
+        intCounts[this.buffer.get(idx) & 0xFF] += 1;
+      }
+    }
+    long[] counts = new long[256];
+    for (int value = 0; value < 256; value++) {
+      counts[value] = intCounts[value];
+    }
+    return counts;
+  }
+}
+
+//to represent writing bytes to a file as a huffman archive, which describes itself:
+//  magic "HUF1" (4 bytes), original length (8), block size (4), block count (4),
+//  code header length (4) and the canonical code's header,
+//  then for each block its file offset (8), bit count (4) and the CRC32 of its
+//  original bytes (4),
+//  then the packed bits of each block
+//every block but the last holds blockSize original bytes, so any byte's block is found
+//without reading anything else
+class ArchiveWriter {
+  static final int MAGIC = 0x48554631;
+  // the size of the fixed fields before the code header, and of each index entry
+  static final int FIXED_HEADER_SIZE = 24;
+  static final int INDEX_ENTRY_SIZE = 16;
+  // the number of bytes coded as one block unless told otherwise
+  static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+  // the largest block size whose bit count fits in an int with 64-bit codes
+  static final int MAX_BLOCK_SIZE = Integer.MAX_VALUE >>> 6;
+
+  CanonicalCode code;
+  int blockSize;
+
+  ArchiveWriter(CanonicalCode code, int blockSize) {
+    if (blockSize < 1 || blockSize > MAX_BLOCK_SIZE) {
+      throw new IllegalArgumentException("Block size is out of range");
+    }
+    this.code = code;
+    this.blockSize = blockSize;
+  }
+
+  ArchiveWriter(CanonicalCode code) {
+    this(code, DEFAULT_BLOCK_SIZE);
+  }
+
+  // EFFECT: writes the given bytes to the given file as an archive
+  void write(byte[] data, Path file) throws IOException {
+    this.write(ByteBuffer.wrap(data), file);
+  }
+
+  // EFFECT: writes the bytes from data's position to its limit to the given file as an
+  // archive, replacing anything already there
+  void write(ByteBuffer data, Path file) throws IOException {
+    int length = data.remaining();
+    int blockCount = (length + this.blockSize - 1) / this.blockSize;
+    byte[] header = this.code.header();
+    long indexStart = FIXED_HEADER_SIZE + header.length;
+    int maxCodeLength = 0;
+    for (int codeLength : this.code.codeLengths) {
+      maxCodeLength = Math.max(maxCodeLength, codeLength);
+    }
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    try {
+      ByteBuffer head = ByteBuffer.allocate((int) indexStart);
+      head.putInt(MAGIC).putLong(length).putInt(this.blockSize).putInt(blockCount)
+          .putInt(header.length).put(header).flip();
+      ArchiveWriter.writeFully(channel, head, 0);
+      ByteBuffer index = ByteBuffer.allocate(blockCount * INDEX_ENTRY_SIZE);
+      ByteBuffer encoded = ByteBuffer.allocate(
+          (int) (((long) this.blockSize * maxCodeLength + 7) >>> 3));
+      CRC32 crc = new CRC32();
+      long offset = indexStart + index.capacity();
+      for (int block = 0; block < blockCount; block++) {
+        ByteBuffer slice = data.duplicate();
+        slice.position(data.position() + block * this.blockSize);
+        slice.limit(Math.min(data.limit(), slice.position() + this.blockSize));
+        crc.reset();
+        crc.update(slice.duplicate());
+        encoded.clear();
+        long bitCount = this.code.encode(slice, encoded);
+        encoded.flip();
+        index.putLong(offset).putInt((int) bitCount).putInt((int) crc.getValue());
+        offset += ArchiveWriter.writeFully(channel, encoded, offset);
+      }
+      index.flip();
+      ArchiveWriter.writeFully(channel, index, indexStart);
+    }
+    finally {
+      channel.close();
+    }
+  }
+
+  // EFFECT: writes all of the given buffer to the channel at the given position
+  // returns the number of bytes written
+  static int writeFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    int written = 0;
+    while (buffer.hasRemaining()) {
+      written += channel.write(buffer, position + written);
+    }
+    return written;
+  }
+}
+
+//to represent an open huffman archive written by an ArchiveWriter: opening maps and
+//reads only the header and block index, and each block is mapped, decoded and checked
+//against its checksum when it is first read
+//readBlock and read are safe to call from many threads at once: the last block decoded
+//is shared through one volatile DecodedBlock that is never changed, and readBlock hands
+//out copies so callers can't change what later reads see
+class HuffmanArchive implements Closeable {
+  FileChannel channel;
+  CanonicalCode code;
+  // the number of original bytes, and in each block but the last
+  long length;
+  int blockSize;
+  // for each block: its file offset, bit count and the CRC32 of its original bytes
+  long[] offsets;
+  int[] bitCounts;
+  int[] checksums;
+  // the last block decoded, so reads within one block decode it once, or null
+  volatile DecodedBlock cached;
+
+  HuffmanArchive(Path file) throws IOException {
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    this.cached = null;
+    boolean opened = false;
+    try {
+      this.readIndex();
+      opened = true;
+    }
+    finally {
+      if (!opened) {
+        this.channel.close();
+      }
+    }
+  }
+
+  // EFFECT: reads the header and block index
+  void readIndex() throws IOException {
+    long size = this.channel.size();
+    if (size < ArchiveWriter.FIXED_HEADER_SIZE) {
+      throw new IOException("Not a huffman archive");
+    }
+    ByteBuffer head = this.channel.map(FileChannel.MapMode.READ_ONLY, 0,
+        ArchiveWriter.FIXED_HEADER_SIZE);
+    if (head.getInt(0) != ArchiveWriter.MAGIC) {
+      throw new IOException("Not a huffman archive");
+    }
+    this.length = head.getLong(4);
+    this.blockSize = head.getInt(12);
+    int blockCount = head.getInt(16);
+    int headerLength = head.getInt(20);
+    if (this.length < 0 || this.blockSize < 1 || this.blockSize > ArchiveWriter.MAX_BLOCK_SIZE
+        || blockCount < 0 || headerLength < 0
+        || blockCount != (this.length + this.blockSize - 1) / this.blockSize
+        || ArchiveWriter.FIXED_HEADER_SIZE + headerLength
+            + (long) blockCount * ArchiveWriter.INDEX_ENTRY_SIZE > size) {
+      throw new IOException("Archive has a corrupt header");
+    }
+    ByteBuffer meta = this.channel.map(FileChannel.MapMode.READ_ONLY,
+        ArchiveWriter.FIXED_HEADER_SIZE,
+        headerLength + (long) blockCount * ArchiveWriter.INDEX_ENTRY_SIZE);
+    byte[] header = new byte[headerLength];
+    meta.get(header);
+    try {
+      this.code = new CanonicalCode(header);
+    }
+    catch (IllegalArgumentException | BufferUnderflowException | IndexOutOfBoundsException e) {
+      throw new IOException("Archive has a corrupt header");
+    }
+    this.offsets = new long[blockCount];
+    this.bitCounts = new int[blockCount];
+    this.checksums = new int[blockCount];
+    for (int block = 0; block < blockCount; block++) {
+      this.offsets[block] = meta.getLong();
+      this.bitCounts[block] = meta.getInt();
+      this.checksums[block] = meta.getInt();
+      if (this.offsets[block] < 0 || this.bitCounts[block] < 0
+          || this.offsets[block] + ((this.bitCounts[block] + 7L) >>> 3) > size) {
+        throw new IOException("Archive has a corrupt index");
+      }
+    }
+  }
+
+  // returns the number of blocks
+  int blockCount() {
+    return this.offsets.length;
+  }
+
+  // returns a copy of the original bytes of the given block
+  byte[] readBlock(int block) throws IOException {
+    return this.sharedBlock(block).clone();
+  }
+
+  // returns the original bytes of the given block, from the last block decoded if it is
+  // the same one, which must not be changed since other reads share them
+  byte[] sharedBlock(int block) throws IOException {
+    if (block < 0 || block >= this.blockCount()) {
+      throw new IllegalArgumentException("Given block is out of bounds");
+    }
+    DecodedBlock last = this.cached;
+    if (last != null && last.block == block) {
+      return last.bytes;
+    }
+    byte[] bytes = this.decodeBlock(block);
+    this.cached = new DecodedBlock(block, bytes);
+    return bytes;
+  }
+
+  // returns the original bytes of the given block, mapping and decoding it and checking
+  // it against its checksum
+  byte[] decodeBlock(int block) throws IOException {
+    int blockLength = (int) Math.min(this.blockSize, this.length - (long) block * this.blockSize);
+    ByteBuffer bits = this.channel.map(FileChannel.MapMode.READ_ONLY, this.offsets[block],
+        (this.bitCounts[block] + 7L) >>> 3);
+    ByteBuffer decoded = ByteBuffer.allocate(blockLength);
+    try {
+      DirectCoding.decode(this.code.decodeTable, bits, this.bitCounts[block], decoded);
+    }
+    catch (IllegalArgumentException | BufferOverflowException e) {
+      throw new IOException("Block " + block + " is corrupt");
+    }
+    if (decoded.hasRemaining()) {
+      throw new IOException("Block " + block + " is corrupt");
+    }
+    CRC32 crc = new CRC32();
+    crc.update(decoded.array());
+    if ((int) crc.getValue() != this.checksums[block]) {
+      throw new IOException("Block " + block + " failed its checksum");
+    }
+    return decoded.array();
+  }
+
+  // EFFECT: reads up to len original bytes starting at the given position into the
+  // given bytes, decoding only the blocks they are in
+  // returns how many were read, or -1 if the position is at or past the end
+  int read(long position, byte[] bytes, int off, int len) throws IOException {
+    if (position < 0) {
+      throw new IllegalArgumentException("Given position is negative");
+    }
+    if (position >= this.length) {
+      return len == 0 ? 0 : -1;
+    }
+    int total = 0;
+    while (total < len && position < this.length) {
+      int block = (int) (position / this.blockSize);
+      byte[] blockBytes = this.sharedBlock(block);
+      int from = (int) (position - (long) block * this.blockSize);
+      int count = Math.min(len - total, blockBytes.length - from);
+      System.arraycopy(blockBytes, from, bytes, off + total, count);
+      total += count;
+      position += count;
+    }
+    return total;
+  }
+
+  // EFFECT: closes the file
+  public void close() throws IOException {
+    this.channel.close();
+  }
+}
+
+//to represent a decoded archive block and its number, shared between threads reading a
+//HuffmanArchive, so neither field may change
+class DecodedBlock {
+  final int block;
+  final byte[] bytes;
+
+  DecodedBlock(int block, byte[] bytes) {
+    this.block = block;
+    this.bytes = bytes;
+  }
+}
+
+//to represent a message coded in fixed-size blocks of symbols, with the bit offset of
+//every block, so blocks can be encoded and decoded in parallel or read on their own
+//an interleaved block is split into STREAMS runs of symbols that are each coded as their
+//own sub-stream, so one thread can decode all of them in one loop, overlapping table
+//lookups that would otherwise each wait on the one before
+class BlockEncoding {
+  // the number of symbols coded as one block unless told otherwise
+  static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+  // the number of sub-streams in an interleaved block
+  static final int STREAMS = 4;
+
+  CanonicalCode code;
+  // the number of symbols in each block but the last
+  int blockSize;
+  // the number of symbols in the whole message
+  int length;
+  BitBuffer bits;
+  // the bit index each block starts at, followed by the total number of bits
+  long[] offsets;
+  boolean interleaved;
+  // the bit index each sub-stream of each interleaved block starts at, STREAMS to a
+  // block, or empty if the blocks are not interleaved
+  long[] streamOffsets;
+
+  BlockEncoding(CanonicalCode code, int[] symbols, int blockSize, boolean interleaved) {
+    if (blockSize < 1) {
+      throw new IllegalArgumentException("Block size must be positive");
+    }
+    this.code = code;
+    this.blockSize = blockSize;
+    this.length = symbols.length;
+    this.interleaved = interleaved;
+    BitBuffer[] blocks = new BitBuffer[(int) ((this.length + (long) blockSize - 1) / blockSize)];
+    // filled in by encodeBlock relative to the start of each block
+    this.streamOffsets = new long[interleaved ? blocks.length * STREAMS : 0];
+    ForkJoinPool.commonPool().invoke(new EncodeBlocksTask(this, symbols, blocks, 0,
+        blocks.length));
+    this.bits = new BitBuffer();
+    this.offsets = new long[blocks.length + 1];
+    for (int block = 0; block < blocks.length; block++) {
+      for (int stream = 0; stream < (this.interleaved ? STREAMS : 0); stream++) {
+        this.streamOffsets[block * STREAMS + stream] += this.bits.size();
+      }
+      this.bits.append(blocks[block]);
+      this.offsets[block + 1] = this.bits.size();
+    }
+  }
+
+  BlockEncoding(CanonicalCode code, int[] symbols, int blockSize) {
+    this(code, symbols, blockSize, false);
+  }
+
+  BlockEncoding(CanonicalCode code, String message, int blockSize, boolean interleaved) {
+    this(code, message.codePoints().toArray(), blockSize, interleaved);
+  }
+
+  BlockEncoding(CanonicalCode code, String message, int blockSize) {
+    this(code, message, blockSize, false);
+  }
+
+  BlockEncoding(CanonicalCode code, String message) {
+    this(code, message, DEFAULT_BLOCK_SIZE);
+  }
+
+  // returns the number of blocks
+  int blockCount() {
+    return this.offsets.length - 1;
+  }
+
+  // returns the number of symbols in the given block
+  int blockLength(int block) {
+    return Math.min(this.blockSize, this.length - block * this.blockSize);
+  }
+
+  // returns the packed bits of the given block of the symbols
+  // EFFECT: for an interleaved block, records where each sub-stream starts within the
+  // block's bits
+  BitBuffer encodeBlock(int[] symbols, int block) {
+    int start = block * this.blockSize;
+    int end = start + this.blockLength(block);
+    BitBuffer encoded = new BitBuffer();
+    if (!this.interleaved) {
+      this.code.encode(symbols, start, end, encoded);
+      return encoded;
+    }
+    int streamLength = (end - start + STREAMS - 1) / STREAMS;
+    for (int stream = 0; stream < STREAMS; stream++) {
+      this.streamOffsets[block * STREAMS + stream] = encoded.size();
+      this.code.encode(symbols, Math.min(end, start + stream * streamLength),
+          Math.min(end, start + (stream + 1) * streamLength), encoded);
+    }
+    return encoded;
+  }
+
+  // returns the letters of the given block
+  String decodeBlock(int block) {
+    if (block < 0 || block >= this.blockCount()) {
+      throw new IllegalArgumentException("Given block is out of bounds");
+    }
+    if (this.interleaved) {
+      int[] symbols = this.decodeInterleaved(block);
+      return new String(symbols, 0, symbols.length);
+    }
+    StringBuilder decoded = new StringBuilder(this.blockSize);
+    this.code.decodeTable.decode(this.bits, this.offsets[block], this.offsets[block + 1],
+        decoded);
+    return decoded.toString();
+  }
+
+  // returns the symbols of the given interleaved block, decoding one symbol from each of
+  // its sub-streams per step while all of them have symbols left, then the rest of each
+  // one on its own
+  int[] decodeInterleaved(int block) {
+    DecodeTable table = this.code.decodeTable;
+    int mask = (1 << DecodeTable.SYMBOL_BITS) - 1;
+    int blockLength = this.blockLength(block);
+    int streamLength = (blockLength + STREAMS - 1) / STREAMS;
+    int[] decoded = new int[blockLength];
+    long[] ends = new long[STREAMS];
+    for (int stream = 0; stream < STREAMS; stream++) {
+      ends[stream] = stream == STREAMS - 1 ? this.offsets[block + 1]
+          : this.streamOffsets[block * STREAMS + stream + 1];
+    }
+    long idx0 = this.streamOffsets[block * STREAMS];
+    long idx1 = this.streamOffsets[block * STREAMS + 1];
+    long idx2 = this.streamOffsets[block * STREAMS + 2];
+    long idx3 = this.streamOffsets[block * STREAMS + 3];
+    // the last sub-stream is the shortest, so all four have this many symbols
+    int shared = Math.max(0, blockLength - 3 * streamLength);
+    for (int pos = 0; pos < shared; pos++) {
+      long next0 = table.next(this.bits, idx0, ends[0]);
+      long next1 = table.next(this.bits, idx1, ends[1]);
+      long next2 = table.next(this.bits, idx2, ends[2]);
+      long next3 = table.next(this.bits, idx3, ends[3]);
+      if ((next0 | next1 | next2 | next3) < 0) {
+        throw new IllegalArgumentException("Encoded bits end partway through a code");
+      }
+      decoded[pos] = (int) (next0 & mask);
+      decoded[streamLength + pos] = (int) (next1 & mask);
+      decoded[2 * streamLength + pos] = (int) (next2 & mask);
+      decoded[3 * streamLength + pos] = (int) (next3 & mask);
+      idx0 = next0 >>> DecodeTable.SYMBOL_BITS;
+      idx1 = next1 >>> DecodeTable.SYMBOL_BITS;
+      idx2 = next2 >>> DecodeTable.SYMBOL_BITS;
+      idx3 = next3 >>> DecodeTable.SYMBOL_BITS;
+    }
+    long[] idxs = new long[] { idx0, idx1, idx2, idx3 };
+    for (int stream = 0; stream < STREAMS; stream++) {
+      int streamEnd = Math.min(blockLength, (stream + 1) * streamLength);
+      for (int pos = stream * streamLength + shared; pos < streamEnd; pos++) {
+        long next = table.next(this.bits, idxs[stream], ends[stream]);
+        if (next < 0) {
+          throw new IllegalArgumentException("Encoded bits end partway through a code");
+        }
+        decoded[pos] = (int) (next & mask);
+        idxs[stream] = next >>> DecodeTable.SYMBOL_BITS;
+      }
+    }
+    return decoded;
+  }
+
+  // returns the whole message, decoding the blocks in parallel
+  String decode() {
+    String[] blocks = new String[this.blockCount()];
+    ForkJoinPool.commonPool().invoke(new DecodeBlocksTask(this, blocks, 0, blocks.length));
+    StringBuilder decoded = new StringBuilder(this.length);
+    for (String block : blocks) {
+      decoded.append(block);
+    }
+    return decoded.toString();
+  }
+}
+
+//to represent encoding the blocks from index from up to index to of some symbols,
+//splitting the range in half until each task has one block
+class EncodeBlocksTask extends RecursiveAction {
+  private static final long serialVersionUID = 1L;
+
+  BlockEncoding encoding;
+  int[] symbols;
+  BitBuffer[] blocks;
+  int from;
+  int to;
+
+  EncodeBlocksTask(BlockEncoding encoding, int[] symbols, BitBuffer[] blocks, int from,
+      int to) {
+    this.encoding = encoding;
+    this.symbols = symbols;
+    this.blocks = blocks;
+    this.from = from;
+    this.to = to;
+  }
+
+  // EFFECT: sets each block in the range to its packed bits
+  protected void compute() {
+    if (this.to - this.from == 1) {
+      this.blocks[this.from] = this.encoding.encodeBlock(this.symbols, this.from);
+    }
+    else if (this.to - this.from > 1) {
+      int mid = (this.from + this.to) >>> 1;
+      invokeAll(new EncodeBlocksTask(this.encoding, this.symbols, this.blocks, this.from, mid),
+          new EncodeBlocksTask(this.encoding, this.symbols, this.blocks, mid, this.to));
+    }
+  }
+}
+
+//to represent decoding the blocks from index from up to index to of a block encoding,
+//splitting the range in half until each task has one block
+class DecodeBlocksTask extends RecursiveAction {
+  private static final long serialVersionUID = 1L;
+
+  BlockEncoding encoding;
+  String[] blocks;
+  int from;
+  int to;
+
+  DecodeBlocksTask(BlockEncoding encoding, String[] blocks, int from, int to) {
+    this.encoding = encoding;
+    this.blocks = blocks;
+    this.from = from;
+    this.to = to;
+  }
+
+  // EFFECT: sets each block in the range to its letters
+  protected void compute() {
+    if (this.to - this.from == 1) {
+      this.blocks[this.from] = this.encoding.decodeBlock(this.from);
+    }
+    else if (this.to - this.from > 1) {
+      int mid = (this.from + this.to) >>> 1;
+      invokeAll(new DecodeBlocksTask(this.encoding, this.blocks, this.from, mid),
+          new DecodeBlocksTask(this.encoding, this.blocks, mid, this.to));
+    }
+  }
+}
+
+//to represent a benchmark of building, encoding and decoding huffmans over a range of
+//alphabet sizes, message sizes and frequency shapes, reporting speed and how much each
+//run allocates
+//every run is timed after warmups runs that are not, so the JIT has compiled the code
+//being measured; run it with java HuffmanBenchmark [largest message size]
+class HuffmanBenchmark {
+  static final int[] ALPHABET_SIZES = { 4, 256, 4096, 65536 };
+  // the message sizes, in symbols; the largest is only run when asked for
+  static final int[] MESSAGE_SIZES = { 1 << 10, 1 << 20, 100 << 20 };
+  static final String[] SHAPES = { "uniform", "zipf", "geometric" };
+  static final int DEFAULT_MAX_MESSAGE_SIZE = 1 << 20;
+
+  int warmups;
+  int runs;
+
+  HuffmanBenchmark(int warmups, int runs) {
+    if (warmups < 0 || runs < 1) {
+      throw new IllegalArgumentException("Runs must be positive and warmups not negative");
+    }
+    this.warmups = warmups;
+    this.runs = runs;
+  }
+
+  // runs the benchmark, printing one line per measurement
+  public static void main(String[] args) {
+    int maxMessageSize = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MAX_MESSAGE_SIZE;
+    new HuffmanBenchmark(5, 10).run(maxMessageSize, System.out);
+  }
+
+  // returns the frequency of each symbol of the given alphabet size with the given shape:
+  // all equal, falling off as 1 / rank, or halving with each rank down to 1
+  static int[] frequencies(String shape, int alphabetSize) {
+    int[] freq = new int[alphabetSize];
+    for (int rank = 0; rank < alphabetSize; rank++) {
+      if (shape.equals("uniform")) {
+        freq[rank] = 1000;
+      }
+      else if (shape.equals("zipf")) {
+        freq[rank] = (int) Math.max(1, Math.round(1000000.0 / (rank + 1)));
+      }
+      else if (shape.equals("geometric")) {
+        freq[rank] = 1 << Math.max(0, 20 - rank);
+      }
+      else {
+        throw new IllegalArgumentException("Unknown shape " + shape);
+      }
+    }
+    return freq;
+  }
+
+  // returns length symbols drawn at random with the given frequencies, the same ones
+  // every time for the same seed
+  static int[] message(int[] freq, int length, long seed) {
+    long[] cumulative = new long[freq.length];
+    long total = 0;
+    for (int symbol = 0; symbol < freq.length; symbol++) {
+      total += freq[symbol];
+      cumulative[symbol] = total;
+    }
+    SplittableRandom random = new SplittableRandom(seed);
+    int[] message = new int[length];
+    for (int idx = 0; idx < length; idx++) {
+      int found = Arrays.binarySearch(cumulative, random.nextLong(total));
+      // the draw belongs to the first symbol whose running total is above it
+      message[idx] = found >= 0 ? found + 1 : -found - 1;
+    }
+    return message;
+  }
+
+  // returns the bytes allocated by this thread so far, or -1 if the JVM can't say
+  static long allocatedBytes() {
+    if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+          .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return -1;
+  }
+
+  // returns the time and allocation of the timed runs of the given operation, which
+  // works through the given number of symbols each run
+  BenchmarkResult measure(String name, Runnable operation, long symbols) {
+    for (int run = 0; run < this.warmups; run++) {
+      operation.run();
+    }
+    long allocatedStart = HuffmanBenchmark.allocatedBytes();
+    long start = System.nanoTime();
+    for (int run = 0; run < this.runs; run++) {
+      operation.run();
+    }
+    long nanos = System.nanoTime() - start;
+    long allocated = allocatedStart < 0 ? -1 : HuffmanBenchmark.allocatedBytes() - allocatedStart;
+    return new BenchmarkResult(name, this.runs, nanos, allocated, symbols);
+  }
+
+  // EFFECT: prints a result for building, encoding and decoding every combination of
+  // alphabet size, shape and message size up to the given message size
+  void run(int maxMessageSize, PrintStream out) {
+    for (int alphabetSize : ALPHABET_SIZES) {
+      for (String shape : SHAPES) {
+        int[] symbols = new int[alphabetSize];
+        for (int symbol = 0; symbol < alphabetSize; symbol++) {
+          symbols[symbol] = symbol;
+        }
+        int[] freq = HuffmanBenchmark.frequencies(shape, alphabetSize);
+        String model = shape + " " + alphabetSize;
+        out.println(this.measure("mergeAll " + model,
+            () -> new Huffman(symbols, freq).build(), alphabetSize));
+        Huffman huffman = new Huffman(symbols, freq);
+        huffman.build();
+        for (int messageSize : MESSAGE_SIZES) {
+          if (messageSize <= maxMessageSize) {
+            int[] message = HuffmanBenchmark.message(freq, messageSize, 42);
+            BitBuffer encoded = huffman.encodeSymbols(message);
+            out.println(this.measure("encode " + model + " x" + messageSize,
+                () -> huffman.encodeSymbols(message), messageSize));
+            out.println(this.measure("decode " + model + " x" + messageSize,
+                () -> huffman.decodeSymbols(encoded), messageSize));
+          }
+        }
+      }
+    }
+  }
+}
+
+//to represent the measurement of one benchmark: how long its timed runs took, how much
+//they allocated (-1 if unknown), and how many symbols each run worked through
+class BenchmarkResult {
+  String name;
+  int runs;
+  long nanos;
+  long allocated;
+  long symbols;
+
+  BenchmarkResult(String name, int runs, long nanos, long allocated, long symbols) {
+    this.name = name;
+    this.runs = runs;
+    this.nanos = nanos;
+    this.allocated = allocated;
+    this.symbols = symbols;
+  }
+
+  // returns the runs per second
+  double opsPerSecond() {
+    return this.runs / (Math.max(1, this.nanos) / 1e9);
+  }
+
+  // returns the symbols per second
+  double symbolsPerSecond() {
+    return this.opsPerSecond() * this.symbols;
+  }
+
+  // returns the bytes allocated per run, or -1 if unknown
+  long allocatedPerOp() {
+    return this.allocated < 0 ? -1 : this.allocated / this.runs;
+  }
+
+  // returns the result on one line
+  public String toString() {
+    return String.format("%-36s %12.1f ops/s %10.2f Msym/s %14d B/op", this.name,
+        this.opsPerSecond(), this.symbolsPerSecond() / 1e6, this.allocatedPerOp());
+  }
+}
+
+//to represent ArrayList utils
+class ArrayUtils {
+  // the longest run sorted by insertion instead of merging
+  static final int INSERTION_THRESHOLD = 32;
+  // the shortest array sorted by radix instead of comparisons
+  static final int RADIX_THRESHOLD = 1 << 10;
+  // the longest run a parallel sort sorts on one thread
+  static final int PARALLEL_THRESHOLD = 1 << 13;
+
+  // Effect: swaps elements of array at given indexes
+  <T> void swap(ArrayList<T> arr, int index1, int index2) {
+    if (index1 > arr.size() - 1 || index2 > arr.size() - 1) {
+      throw new IllegalArgumentException("Given indexes are out of bounds");
+    }
+    T oldValueAtIndex2 = arr.get(index2);
+    arr.set(index2, arr.get(index1));
+    arr.set(index1, oldValueAtIndex2);
+  }
+
+  // Effect: sorts array according to comparator, keeping equal elements in order
+  // (a merge sort, O(n log n), and linear on lists that are already sorted)
+  <T> void sort(ArrayList<T> arr, Comparator<T> comp) {
+    Object[] items = arr.toArray();
+    this.mergeSort(items, new Object[items.length], 0, items.length, comp);
+    this.copyBack(items, arr);
+  }
+
+  // Effect: sorts array according to comparator like sort, splitting large arrays
+  // across the fork/join pool
+  <T> void parallelSort(ArrayList<T> arr, Comparator<T> comp) {
+    Object[] items = arr.toArray();
+    ForkJoinPool.commonPool().invoke(new MergeSortTask<T>(this, items,
+        new Object[items.length], 0, items.length, comp));
+    this.copyBack(items, arr);
+  }
+
+  // Effect: sets the elements of array to the given sorted items
+  @SuppressWarnings("unchecked")
+  <T> void copyBack(Object[] items, ArrayList<T> arr) {
+    for (int idx = 0; idx < items.length; idx++) {
+      arr.set(idx, (T) items[idx]);
+    }
+  }
+
+  // Effect: sorts the items from index lo up to index hi, using buffer for scratch
+  <T> void mergeSort(Object[] items, Object[] buffer, int lo, int hi, Comparator<T> comp) {
+    if (hi - lo <= INSERTION_THRESHOLD) {
+      this.insertionSort(items, lo, hi, comp);
+    }
+    else {
+      int mid = (lo + hi) >>> 1;
+      this.mergeSort(items, buffer, lo, mid, comp);
+      this.mergeSort(items, buffer, mid, hi, comp);
+      this.merge(items, buffer, lo, mid, hi, comp);
+    }
+  }
+
+  // Effect: sorts the items from index lo up to index hi by insertion
+  @SuppressWarnings("unchecked")
+  <T> void insertionSort(Object[] items, int lo, int hi, Comparator<T> comp) {
+    for (int idx = lo + 1; idx < hi; idx++) {
+      Object item = items[idx];
+      int pos = idx;
+      while (pos > lo && comp.compare((T) items[pos - 1], (T) item) > 0) {
+        items[pos] = items[pos - 1];
+        pos -= 1;
+      }
+      items[pos] = item;
+    }
+  }
+
+  // Effect: merges the sorted items from lo up to mid with the sorted items from mid up
+  // to hi, taking from the left run on ties so equal items keep their order
+  @SuppressWarnings("unchecked")
+  <T> void merge(Object[] items, Object[] buffer, int lo, int mid, int hi, Comparator<T> comp) {
+    if (lo == mid || mid == hi || comp.compare((T) items[mid - 1], (T) items[mid]) <= 0) {
+      return;
+    }
+    System.arraycopy(items, lo, buffer, lo, mid - lo);
+    int left = lo;
+    int right = mid;
+    int out = lo;
+    while (left < mid && right < hi) {
+      if (comp.compare((T) items[right], (T) buffer[left]) < 0) {
+        items[out] = items[right];
+        right += 1;
+      }
+      else {
+        items[out] = buffer[left];
+        left += 1;
+      }
+      out += 1;
+    }
+    System.arraycopy(buffer, left, items, out, mid - left);
+  }
+
+  // Effect: sorts the given ints from least to greatest, by radix when there are many
+  // of them and by the JDK's dual-pivot quicksort when there are few
+  void sort(int[] arr) {
+    if (arr.length < RADIX_THRESHOLD) {
+      Arrays.sort(arr);
+    }
+    else {
+      this.radixSort(arr, null);
+    }
+  }
+
+  // Effect: sorts array by the given int key of each element, keeping equal keys in
+  // order, by radix when there are many elements
+  <T> void sortByKey(ArrayList<T> arr, ToIntFunction<T> key) {
+    if (arr.size() < RADIX_THRESHOLD) {
+      this.sort(arr, Comparator.comparingInt(key));
+    }
+    else {
+      int[] keys = new int[arr.size()];
+      for (int idx = 0; idx < keys.length; idx++) {
+        keys[idx] = key.applyAsInt(arr.get(idx));
+      }
+      Object[] items = arr.toArray();
+      this.radixSort(keys, items);
+      this.copyBack(items, arr);
+    }
+  }
+
+  // Effect: sorts the given keys, and the items with them if there are any, a byte at
+  // a time from the lowest, keeping equal keys in order
+  // a pass where every key has the same byte is skipped, so small keys such as
+  // frequencies take one or two passes
+  void radixSort(int[] keys, Object[] items) {
+    if (keys.length == 0) {
+      return;
+    }
+    int[] keyBuffer = new int[keys.length];
+    Object[] itemBuffer = items == null ? null : new Object[items.length];
+    int[] srcKeys = keys;
+    int[] dstKeys = keyBuffer;
+    Object[] srcItems = items;
+    Object[] dstItems = itemBuffer;
+    for (int shift = 0; shift < 32; shift += 8) {
+      int[] starts = new int[257];
+      for (int value : srcKeys) {
+        // flipping the sign bit puts negative keys before positive ones
+        starts[(((value ^ Integer.MIN_VALUE) >>> shift) & 0xFF) + 1] += 1;
+      }
+      if (starts[(((srcKeys[0] ^ Integer.MIN_VALUE) >>> shift) & 0xFF) + 1] == keys.length) {
+        continue;
+      }
+      for (int digit = 0; digit < 256; digit++) {
+        starts[digit + 1] += starts[digit];
+      }
+      for (int idx = 0; idx < srcKeys.length; idx++) {
+        int digit = ((srcKeys[idx] ^ Integer.MIN_VALUE) >>> shift) & 0xFF;
+        dstKeys[starts[digit]] = srcKeys[idx];
+        if (srcItems != null) {
+          dstItems[starts[digit]] = srcItems[idx];
+        }
+        starts[digit] += 1;
+      }
+      int[] swapKeys = srcKeys;
+      srcKeys = dstKeys;
+      dstKeys = swapKeys;
+      Object[] swapItems = srcItems;
+      srcItems = dstItems;
+      dstItems = swapItems;
+    }
+    if (srcKeys != keys) {
+      System.arraycopy(srcKeys, 0, keys, 0, keys.length);
+      if (items != null) {
+        System.arraycopy(srcItems, 0, items, 0, items.length);
+      }
+    }
+  }
+}
+
+//to represent merge sorting the items from index lo up to index hi, sorting the halves
+//in parallel until a run is short enough for one thread
+class MergeSortTask<T> extends RecursiveAction {
+  private static final long serialVersionUID = 1L;
+
+  ArrayUtils utils;
+  Object[] items;
+  Object[] buffer;
+  int lo;
+  int hi;
+  Comparator<T> comp;
+
+  MergeSortTask(ArrayUtils utils, Object[] items, Object[] buffer, int lo, int hi,
+      Comparator<T> comp) {
+    this.utils = utils;
+    this.items = items;
+    this.buffer = buffer;
+    this.lo = lo;
+    this.hi = hi;
+    this.comp = comp;
+  }
+
+  // EFFECT: sorts the items in the range
+  protected void compute() {
+    if (this.hi - this.lo <= ArrayUtils.PARALLEL_THRESHOLD) {
+      this.utils.mergeSort(this.items, this.buffer, this.lo, this.hi, this.comp);
+    }
+    else {
+      int mid = (this.lo + this.hi) >>> 1;
+      invokeAll(new MergeSortTask<T>(this.utils, this.items, this.buffer, this.lo, mid, this.comp),
+          new MergeSortTask<T>(this.utils, this.items, this.buffer, mid, this.hi, this.comp));
+      this.utils.merge(this.items, this.buffer, this.lo, mid, this.hi, this.comp);
+    }
+  }
+}
+
+//to represent comparing the freq of two trees
+class TreeCompare implements Comparator<Tree> {
+  // to compare the freq of two trees
+  public int compare(Tree o1, Tree o2) {
+    return o1.freq - o2.freq;
+  }
+}
+
+//to represent comparing integers
+class IntCompare implements Comparator<Integer> {
+  // to return the difference of two Integers
+  public int compare(Integer o1, Integer o2) {
+    return o1 - o2;
+  }
+}
+
+//to represent comparing strings
+class StringCompare implements Comparator<String> {
+  // to return the lexicographical difference between two strings
+  public int compare(String o1, String o2) {
+    return o1.compareTo(o2);
+  }
+}
+
+//to represent examples of huffman
+class ExamplesHuffman {
+  // Create examples
+  ArrayList<Integer> numList1;
+  ArrayList<Integer> numList2;
+  ArrayList<String> letterList1;
+  ArrayList<String> letterList2;
+  Leaf leaf1;
+  Leaf leaf2;
+  Leaf leaf3;
+  Node node1;
+  Node node2;
   ArrayUtils arrayUtils;
   Huffman huffman1;
   Huffman huffman2;
@@ -359,6 +3804,90 @@ class ExamplesHuffman {
 
   }
 
+  // to test that sort in ArrayUtils is stable and handles large lists
+  void testSortStable(Tester t) {
+    this.init();
+    ArrayList<String> words = new ArrayList<String>();
+    for (int idx = 0; idx < 5000; idx++) {
+      words.add((char) ('a' + idx * 7 % 26) + Integer.toString(idx));
+    }
+    ArrayList<String> expected = new ArrayList<String>(words);
+    expected.sort(Comparator.comparing(word -> word.charAt(0)));
+    this.arrayUtils.sort(words, Comparator.comparing(word -> word.charAt(0)));
+    t.checkExpect(words, expected);
+    this.arrayUtils.sort(words, Comparator.comparing(word -> word.charAt(0)));
+    t.checkExpect(words, expected);
+    ArrayList<String> empty = new ArrayList<String>();
+    this.arrayUtils.sort(empty, new StringCompare());
+    t.checkExpect(empty, new ArrayList<String>());
+  }
+
+  // to test parallelSort in ArrayUtils and compute in MergeSortTask
+  void testParallelSort(Tester t) {
+    this.init();
+    ArrayList<Integer> nums = new ArrayList<Integer>();
+    for (int idx = 0; idx < 100000; idx++) {
+      nums.add(idx * 7919 % 100003 - 50000);
+    }
+    ArrayList<Integer> expected = new ArrayList<Integer>(nums);
+    expected.sort(new IntCompare());
+    this.arrayUtils.parallelSort(nums, new IntCompare());
+    t.checkExpect(nums, expected);
+    Object[] items = new Object[] { 3, 1, 2 };
+    new MergeSortTask<Integer>(this.arrayUtils, items, new Object[3], 0, 3, new IntCompare())
+        .invoke();
+    t.checkExpect(items, new Object[] { 1, 2, 3 });
+  }
+
+  // to test insertionSort and merge in ArrayUtils
+  void testMerge(Tester t) {
+    this.init();
+    Object[] items = new Object[] { 9, 2, 5, 8, 1, 4, 6 };
+    this.arrayUtils.insertionSort(items, 1, 4, new IntCompare());
+    t.checkExpect(items, new Object[] { 9, 2, 5, 8, 1, 4, 6 });
+    this.arrayUtils.insertionSort(items, 3, 7, new IntCompare());
+    t.checkExpect(items, new Object[] { 9, 2, 5, 1, 4, 6, 8 });
+    this.arrayUtils.merge(items, new Object[7], 1, 3, 7, new IntCompare());
+    t.checkExpect(items, new Object[] { 9, 1, 2, 4, 5, 6, 8 });
+  }
+
+  // to test sort over ints and radixSort in ArrayUtils
+  void testSortInts(Tester t) {
+    this.init();
+    int[] small = new int[] { 5, -3, 9, 0 };
+    this.arrayUtils.sort(small);
+    t.checkExpect(small, new int[] { -3, 0, 5, 9 });
+    int[] large = new int[50000];
+    for (int idx = 0; idx < large.length; idx++) {
+      large[idx] = idx * 1103515245 + 12345;
+    }
+    int[] expected = large.clone();
+    Arrays.sort(expected);
+    this.arrayUtils.sort(large);
+    t.checkExpect(large, expected);
+    int[] keys = new int[] { 2, 1, 2, 1 };
+    Object[] items = new Object[] { "a", "b", "c", "d" };
+    this.arrayUtils.radixSort(keys, items);
+    t.checkExpect(keys, new int[] { 1, 1, 2, 2 });
+    t.checkExpect(items, new Object[] { "b", "d", "a", "c" });
+  }
+
+  // to test sortByKey in ArrayUtils
+  void testSortByKey(Tester t) {
+    this.init();
+    ArrayList<String> words = new ArrayList<String>(Arrays.asList("ccc", "a", "bb", "d"));
+    this.arrayUtils.sortByKey(words, String::length);
+    t.checkExpect(words, new ArrayList<String>(Arrays.asList("a", "d", "bb", "ccc")));
+    ArrayList<Integer> nums = new ArrayList<Integer>();
+    for (int idx = 0; idx < 3000; idx++) {
+      nums.add(idx % 3 == 0 ? -idx : idx % 500);
+    }
+    ArrayList<Integer> expected = new ArrayList<Integer>(nums);
+    expected.sort(new IntCompare());
+    this.arrayUtils.sortByKey(nums, num -> num);
+    t.checkExpect(nums, expected);
+  }
+
   // to test swap in ArrayUtils
   void testSwap(Tester t) {
     this.init();
@@ -385,18 +3914,23 @@ class ExamplesHuffman {
   // to test initCode in Huffman
   void testInitCode(Tester t) {
     this.init();
-    t.checkExpect(this.huffman1.code, new ArrayList<ArrayList<String>>());
+    t.checkExpect(this.huffman1.codeLengths.length, 0);
     this.huffman1.initCode();
-    t.checkExpect(this.huffman1.code,
-        new ArrayList<ArrayList<String>>(Arrays.asList(new ArrayList<String>(Arrays.asList("d")),
-            new ArrayList<String>(Arrays.asList("b")), new ArrayList<String>(Arrays.asList("a")),
-            new ArrayList<String>(Arrays.asList("c")), new ArrayList<String>(Arrays.asList("f")))));
-    
-    t.checkExpect(this.huffman2.code, new ArrayList<ArrayList<String>>());
+    t.checkExpect(this.huffman1.codeLengths.length, 103);
+    t.checkExpect(this.huffman1.codeBits.length, 103);
+    t.checkExpect(this.huffman1.codeLengths['c'], 0);
+    this.huffman1.createLeaves();
+    this.huffman1.mergeAll();
+    t.checkExpect(this.huffman1.codeLengths['c'], 1);
+
+    this.huffman2.createLeaves();
+    this.huffman2.mergeAll();
+    t.checkExpect(this.huffman2.codeLengths.length, 0);
     this.huffman2.initCode();
-    t.checkExpect(this.huffman2.code,
-        new ArrayList<ArrayList<String>>(Arrays.asList(new ArrayList<String>(Arrays.asList("g")),
-            new ArrayList<String>(Arrays.asList("f")), new ArrayList<String>(Arrays.asList("r")))));
+    t.checkExpect(this.huffman2.codeLengths.length, 115);
+    t.checkExpect(this.huffman2.codeBits['g'], 3L);
+    t.checkExpect(this.huffman2.codeLengths['g'], 2);
+    t.checkExpect(this.huffman2.codeLengths['a'], 0);
   }
 
   // to test mergeTrees in Huffman
@@ -419,33 +3953,37 @@ class ExamplesHuffman {
             new Node(new Leaf("r", 2), new Leaf("g", 5)))));
   }
 
-  // to test addCode in Huffman
-  void testAddCode(Tester t) {
+  // to test addAllCodes in Huffman
+  void testAddAllCodes(Tester t) {
     this.init();
-    this.huffman1.createLeaves();
-    this.huffman1.initCode();
-    t.checkExpect(this.huffman1.code,
-        new ArrayList<ArrayList<String>>(Arrays.asList(new ArrayList<String>(Arrays.asList("d")),
-            new ArrayList<String>(Arrays.asList("b")), new ArrayList<String>(Arrays.asList("a")),
-            new ArrayList<String>(Arrays.asList("c")), new ArrayList<String>(Arrays.asList("f")))));
-    this.huffman1.mergeTrees(); // mergeTrees calls on addCode as a helper
-    t.checkExpect(this.huffman1.code,
-        new ArrayList<ArrayList<String>>(Arrays.asList(new ArrayList<String>(Arrays.asList("d")),
-            new ArrayList<String>(Arrays.asList("b", "true")),
-            new ArrayList<String>(Arrays.asList("a")), new ArrayList<String>(Arrays.asList("c")),
-            new ArrayList<String>(Arrays.asList("f", "false")))));
-    
     this.huffman2.createLeaves();
     this.huffman2.initCode();
-    t.checkExpect(this.huffman2.code,
-        new ArrayList<ArrayList<String>>(Arrays.asList(new ArrayList<String>(Arrays.asList("g")),
-        new ArrayList<String>(Arrays.asList("f")), new ArrayList<String>(Arrays.asList("r")))));
     this.huffman2.mergeTrees();
-    t.checkExpect(this.huffman2.code, 
-        new ArrayList<ArrayList<String>>(Arrays.asList(
-            new ArrayList<String>(Arrays.asList("g", "true")),
-        new ArrayList<String>(Arrays.asList("f")),
-        new ArrayList<String>(Arrays.asList("r", "false")))));
+    t.checkExpect(this.huffman2.codeLengths['g'], 0);
+    this.huffman2.mergeTrees(); // mergeTrees calls on addAllCodes as a helper
+    t.checkExpect(this.huffman2.codeBits['f'], 0L);
+    t.checkExpect(this.huffman2.codeLengths['f'], 1);
+    t.checkExpect(this.huffman2.codeBits['r'], 2L);
+    t.checkExpect(this.huffman2.codeLengths['r'], 2);
+    t.checkExpect(this.huffman2.codeBits['g'], 3L);
+    t.checkExpect(this.huffman2.codeLengths['g'], 2);
+  }
+
+  // to test addCodes in Tree
+  void testAddCodes(Tester t) {
+    this.init();
+    long[] bits = new long[128];
+    int[] lengths = new int[128];
+    this.leaf1.addCodes(bits, lengths, 5, 3);
+    t.checkExpect(bits['c'], 5L);
+    t.checkExpect(lengths['c'], 3);
+    this.node2.addCodes(bits, lengths, 0, 0);
+    t.checkExpect(bits['g'], 0L);
+    t.checkExpect(lengths['g'], 1);
+    t.checkExpect(bits['c'], 2L);
+    t.checkExpect(lengths['c'], 2);
+    t.checkExpect(bits['d'], 3L);
+    t.checkExpect(lengths['d'], 2);
   }
 
   // to test mergeAll in Huffman
@@ -455,33 +3993,65 @@ class ExamplesHuffman {
     this.huffman1.createLeaves();
     t.checkExpect(this.huffman1.trees, new ArrayList<Tree>(Arrays.asList(new Leaf("f", 1),
         new Leaf("b", 2), new Leaf("d", 4), new Leaf("a", 5), new Leaf("c", 8))));
-    t.checkExpect(this.huffman1.code,
-        new ArrayList<ArrayList<String>>(Arrays.asList(new ArrayList<String>(Arrays.asList("d")),
-            new ArrayList<String>(Arrays.asList("b")), new ArrayList<String>(Arrays.asList("a")),
-            new ArrayList<String>(Arrays.asList("c")), new ArrayList<String>(Arrays.asList("f")))));
 
     this.huffman1.mergeAll();
 
     t.checkExpect(this.huffman1.trees,
         new ArrayList<Tree>(Arrays.asList(new Node(new Leaf("c", 8), new Node(new Leaf("a", 5),
             new Node(new Node(new Leaf("f", 1), new Leaf("b", 2)), new Leaf("d", 4)))))));
-    t.checkExpect(this.huffman1.code,
-        new ArrayList<ArrayList<String>>(
-            Arrays.asList(new ArrayList<String>(Arrays.asList("d", "true", "true", "true")),
-                new ArrayList<String>(Arrays.asList("b", "true", "true", "false", "true")),
-                new ArrayList<String>(Arrays.asList("a", "true", "false")),
-                new ArrayList<String>(Arrays.asList("c", "false")),
-                new ArrayList<String>(Arrays.asList("f", "true", "true", "false", "false")))));
+    t.checkExpect(this.huffman1.codeBits['d'], 7L);
+    t.checkExpect(this.huffman1.codeLengths['d'], 3);
+    t.checkExpect(this.huffman1.codeBits['b'], 13L);
+    t.checkExpect(this.huffman1.codeLengths['b'], 4);
+    t.checkExpect(this.huffman1.codeBits['a'], 2L);
+    t.checkExpect(this.huffman1.codeLengths['a'], 2);
+    t.checkExpect(this.huffman1.codeBits['c'], 0L);
+    t.checkExpect(this.huffman1.codeLengths['c'], 1);
+    t.checkExpect(this.huffman1.codeBits['f'], 12L);
+    t.checkExpect(this.huffman1.codeLengths['f'], 4);
     
     this.huffman2.initCode();
     this.huffman2.createLeaves();
     t.checkExpect(this.huffman2.trees, new ArrayList<Tree>(Arrays.asList(new Leaf("r", 2),
         new Leaf("g", 5), new Leaf("f", 6))));
-    t.checkExpect(this.huffman2.code,
-        new ArrayList<ArrayList<String>>(Arrays.asList(new ArrayList<String>(Arrays.asList("g")),
-        new ArrayList<String>(Arrays.asList("f")), new ArrayList<String>(Arrays.asList("r")))));
 
     this.huffman2.mergeAll();
+    t.checkExpect(this.huffman2.trees, new ArrayList<Tree>(Arrays.asList(
+        new Node(new Leaf("f", 6), new Node(new Leaf("r", 2), new Leaf("g", 5))))));
+    t.checkExpect(this.huffman2.codeLengths['f'], 1);
+  }
+
+  // to test mergeAll in Huffman on an alphabet too large for a re-sort per merge
+  void testMergeAllLarge(Tester t) {
+    ArrayList<String> letters = new ArrayList<String>();
+    ArrayList<Integer> freqs = new ArrayList<Integer>();
+    for (int idx = 0; idx < 65536; idx++) {
+      letters.add(String.valueOf((char) idx));
+      freqs.add(idx % 100 + 1);
+    }
+    Huffman big = new Huffman(letters, freqs);
+    big.createLeaves();
+    big.initCode();
+    big.mergeAll();
+    t.checkExpect(big.trees.size(), 1);
+    t.checkExpect(big.trees.get(0).freq, 3308416);
+    t.checkExpect(big.decode(big.encode("huffman")), "huffman");
+  }
+
+  // to test poll, add and size in MergeQueue
+  void testMergeQueue(Tester t) {
+    this.init();
+    MergeQueue queue = new MergeQueue(new ArrayList<Tree>(Arrays.asList(new Leaf("f", 1),
+        new Leaf("b", 2), new Leaf("d", 3))));
+    t.checkExpect(queue.size(), 3);
+    t.checkExpect(queue.poll(), new Leaf("f", 1));
+    queue.add(new Node(new Leaf("x", 1), new Leaf("y", 2)));
+    t.checkExpect(queue.size(), 3);
+    t.checkExpect(queue.poll(), new Leaf("b", 2));
+    t.checkExpect(queue.poll(), new Leaf("d", 3));
+    t.checkExpect(queue.poll(), new Node(new Leaf("x", 1), new Leaf("y", 2)));
+    t.checkExpect(queue.size(), 0);
+    t.checkException(new RuntimeException("Cannot poll an empty queue"), queue, "poll");
   }
 
   // to test charInList in Huffman
@@ -556,6 +4126,1486 @@ class ExamplesHuffman {
         && t.checkExpect(this.huffman1.trees.get(0).traverse(this.code1, 4), "c5");
   }
 
+  // to test walk in Tree
+  boolean testWalk(Tester t) {
+    this.init();
+    this.initHuffman();
+    Tree tree = this.huffman1.trees.get(0);
+    BitBuffer code1 = new BitBuffer(this.code1);
+    return t.checkExpect(tree.walk(code1, 0, 5), DecodeTable.pack('b', 4))
+        && t.checkExpect(tree.walk(code1, 4, 5), DecodeTable.pack('c', 5))
+        && t.checkExpect(tree.walk(code1, 1, 5), DecodeTable.pack('a', 3))
+        && t.checkExpect(tree.walk(code1, 0, 3), -1L)
+        && t.checkExpect(this.leaf1.walk(code1, 2, 2), DecodeTable.pack('c', 2));
+  }
+
+  // to test encodePacked in Huffman
+  boolean testEncodePacked(Tester t) {
+    this.init();
+    BitBuffer encoded = this.huffman1.encodePacked("cabda");
+    return t.checkExpect(encoded.size(), 12L)
+        && t.checkExpect(encoded.toByteArray(), new byte[] { 0x5B, (byte) 0xE0 })
+        && t.checkExpect(this.huffman1.decode(encoded), "cabda")
+        && t.checkException(new IllegalArgumentException(
+            "Tried to encode s but that is not part of the language."),
+            huffman1, "encodePacked", "s");
+  }
+
+  // to test decode of packed bits in Huffman
+  boolean testDecodePacked(Tester t) {
+    this.init();
+    return t.checkExpect(this.huffman1.decode(new BitBuffer(new byte[] { 0x5B, (byte) 0xE0 },
+        12)), "cabda")
+        && t.checkExpect(this.huffman1.decode(new BitBuffer(new byte[] { 0x5B, (byte) 0xE8 },
+            13)), "cabda?")
+        && t.checkExpect(this.huffman2.decode(new BitBuffer()), "");
+  }
+
+  // to test canonicalCode in Huffman
+  boolean testCanonicalCode(Tester t) {
+    this.init();
+    CanonicalCode code = this.huffman1.canonicalCode();
+    return t.checkExpect(code.codeLengths, this.huffman1.codeLengths)
+        && t.checkExpect(code.codeBits['c'], 0L)
+        && t.checkExpect(code.codeBits['a'], 2L)
+        && t.checkExpect(code.codeBits['d'], 6L)
+        && t.checkExpect(code.codeBits['b'], 14L)
+        && t.checkExpect(code.codeBits['f'], 15L)
+        && t.checkExpect(code.sortedSymbols, new int[] { 'c', 'a', 'd', 'b', 'f' });
+  }
+
+  // to test the constructors of CanonicalCode
+  boolean testCanonicalCodeConstructors(Tester t) {
+    int[] lengths = new int[128];
+    lengths['x'] = 2;
+    lengths['y'] = 1;
+    lengths['z'] = 2;
+    CanonicalCode code = new CanonicalCode(lengths);
+    return t.checkExpect(code.sortedBits, new long[] { 0, 2, 3 })
+        && t.checkExpect(code.tree, new Node(new Leaf("y", 0), new Node(new Leaf("x", 0),
+            new Leaf("z", 0))))
+        && t.checkExpect(new CanonicalCode(code.header()).sortedBits, code.sortedBits)
+        && t.checkConstructorException(new IllegalArgumentException(
+            "Code lengths do not form a complete prefix code"), "CanonicalCode",
+            new int[] { 1, 2, 2, 2 })
+        && t.checkConstructorException(new IllegalArgumentException(
+            "Code lengths do not form a complete prefix code"), "CanonicalCode",
+            new int[] { 2, 2, 2, 0 })
+        && t.checkConstructorException(new IllegalArgumentException(
+            "Code lengths must be between 0 and 64"), "CanonicalCode", new int[] { 1, 65 });
+  }
+
+  // to test isComplete in CanonicalCode
+  boolean testIsComplete(Tester t) {
+    CanonicalCode code = new CanonicalCode(new int[] { 1, 1 });
+    int[] count = new int[65];
+    count[1] = 1;
+    count[2] = 2;
+    boolean complete = code.isComplete(count);
+    count[64] = 1;
+    return t.checkExpect(complete, true)
+        && t.checkExpect(code.isComplete(count), false)
+        && t.checkExpect(code.isComplete(new int[65]), false);
+  }
+
+  // to test buildTree in CanonicalCode
+  boolean testBuildTree(Tester t) {
+    this.init();
+    CanonicalCode code = this.huffman1.canonicalCode();
+    return t.checkExpect(code.buildTree(3, 5, 3), new Node(new Leaf("b", 0), new Leaf("f", 0)))
+        && t.checkExpect(code.buildTree(0, 1, 1), new Leaf("c", 0))
+        && t.checkExpect(code.tree.height(), 4);
+  }
+
+  // to test header and readHeader in CanonicalCode
+  boolean testHeader(Tester t) {
+    this.init();
+    CanonicalCode sparse = this.huffman1.canonicalCode();
+    int[] lengths = new int[4];
+    Arrays.fill(lengths, 2);
+    CanonicalCode dense = new CanonicalCode(lengths);
+    return t.checkExpect(sparse.header(), new byte[] { 1, 0, 0, 0, 5, 0, 0, 'a', 2, 0, 0, 'b',
+        4, 0, 0, 'c', 1, 0, 0, 'd', 3, 0, 0, 'f', 4 })
+        && t.checkExpect(dense.header(), new byte[] { 0, 0, 0, 0, 4, 2, 2, 2, 2 })
+        && t.checkExpect(CanonicalCode.readHeader(sparse.header()), sparse.codeLengths)
+        && t.checkExpect(CanonicalCode.readHeader(dense.header()), lengths)
+        && t.checkConstructorException(new IllegalArgumentException(
+            "Header has an unknown format"), "CanonicalCode", new byte[] { 7, 0, 0, 0, 0 })
+        && t.checkConstructorException(new IllegalArgumentException(
+            "Header has an invalid symbol count"), "CanonicalCode",
+            new byte[] { 0, -1, -1, -1, -1 })
+        && t.checkConstructorException(new IllegalArgumentException("Header is truncated"),
+            "CanonicalCode", new byte[0])
+        && t.checkConstructorException(new IllegalArgumentException("Header is truncated"),
+            "CanonicalCode", new byte[] { 0, 0, 0, 0, 10, 1 })
+        && t.checkConstructorException(new IllegalArgumentException("Header is truncated"),
+            "CanonicalCode", new byte[] { 1, 0, 0, 0, 2, 0, 0, 'a', 1 });
+  }
+
+  // to test encode and decode in CanonicalCode
+  boolean testCanonicalEncodeDecode(Tester t) {
+    this.init();
+    CanonicalCode code = new CanonicalCode(this.huffman1.canonicalCode().header());
+    BitBuffer encoded = code.encode("cabda");
+    return t.checkExpect(encoded.toByteArray(), new byte[] { 0x5D, (byte) 0xA0 })
+        && t.checkExpect(encoded.size(), 12L)
+        && t.checkExpect(code.decode(encoded), "cabda")
+        && t.checkException(new IllegalArgumentException(
+            "Tried to encode s but that is not part of the language."), code, "encode", "s")
+        && t.checkException(new IllegalArgumentException(
+            "Tried to encode \u0100 but that is not part of the language."), code, "encode",
+            "\u0100");
+  }
+
+  // to test encode of bytes and encodeSymbol in CanonicalCode
+  boolean testCanonicalEncodeBytes(Tester t) {
+    this.init();
+    CanonicalCode code = this.huffman1.canonicalCode();
+    BitBuffer encoded = new BitBuffer();
+    code.encode(new byte[] { 'c', 'a', 'b', 'd', 'a', 'f' }, 5, encoded);
+    BitBuffer letters = new BitBuffer();
+    code.encodeSymbol('f', letters);
+    code.encodeSymbol('c', letters);
+    return t.checkExpect(encoded.toByteArray(), new byte[] { 0x5D, (byte) 0xA0 })
+        && t.checkExpect(letters.toByteArray(), new byte[] { (byte) 0xF0 })
+        && t.checkExpect(letters.size(), 5L)
+        && t.checkException(new IllegalArgumentException(
+            "Tried to encode g but that is not part of the language."), code, "encodeSymbol",
+            'g', new BitBuffer());
+  }
+
+  // to test writing to and reading from huffman streams
+  void testHuffmanStreams(Tester t) throws IOException {
+    this.init();
+    CanonicalCode code = this.huffman1.canonicalCode();
+    StringBuilder message = new StringBuilder();
+    for (int idx = 0; idx < 1000; idx++) {
+      message.append("cabdaf".charAt(idx * idx % 6));
+    }
+    byte[] original = message.toString().getBytes(StandardCharsets.ISO_8859_1);
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    HuffmanOutputStream out = new HuffmanOutputStream(code, compressed, 100);
+    out.write(original[0]);
+    out.write(original, 1, original.length - 1);
+    out.close();
+    out.close();
+
+    HuffmanInputStream in = new HuffmanInputStream(
+        new ByteArrayInputStream(compressed.toByteArray()), 100);
+    byte[] decoded = new byte[original.length];
+    decoded[0] = (byte) in.read();
+    int length = 1;
+    while (length < decoded.length) {
+      length += in.read(decoded, length, decoded.length - length);
+    }
+    t.checkExpect(decoded, original);
+    t.checkExpect(in.read(), -1);
+    t.checkExpect(in.read(decoded, 0, 5), -1);
+    t.checkExpect(compressed.size() < original.length / 2, true);
+  }
+
+  // to test huffman streams over channels and flushing part of a block
+  void testHuffmanStreamChannels(Tester t) throws IOException {
+    this.init();
+    CanonicalCode code = this.huffman1.canonicalCode();
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    HuffmanOutputStream out = new HuffmanOutputStream(code, Channels.newChannel(compressed));
+    out.write("cab".getBytes(StandardCharsets.ISO_8859_1));
+    out.flush();
+    int flushedSize = compressed.size();
+    out.write("da".getBytes(StandardCharsets.ISO_8859_1));
+    out.close();
+    HuffmanInputStream in = new HuffmanInputStream(
+        Channels.newChannel(new ByteArrayInputStream(compressed.toByteArray())));
+    byte[] decoded = new byte[10];
+    t.checkExpect(flushedSize, 4 + 4 + code.header().length + 4 + 1);
+    t.checkExpect(in.read(decoded, 0, 10), 3);
+    t.checkExpect(in.available(), 0);
+    t.checkExpect(in.read(decoded, 3, 10 - 3), 2);
+    t.checkExpect(new String(decoded, 0, 5, StandardCharsets.ISO_8859_1), "cabda");
+    HuffmanOutputStream unknown = new HuffmanOutputStream(code, new ByteArrayOutputStream());
+    unknown.write('g');
+    t.checkException(new IllegalArgumentException(
+        "Tried to encode g but that is not part of the language."), unknown, "flush");
+    t.checkConstructorException(new IllegalArgumentException("Block size is out of range"),
+        "HuffmanOutputStream", code, compressed, 0);
+  }
+
+  // to test that huffman streams reject corrupt data
+  void testHuffmanStreamCorrupt(Tester t) throws IOException {
+    this.init();
+    ByteArrayOutputStream bad = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bad);
+    byte[] header = this.huffman1.canonicalCode().header();
+    out.writeInt(10);
+    out.writeInt(header.length);
+    out.write(header);
+    out.writeInt(-5);
+    HuffmanInputStream in = new HuffmanInputStream(new ByteArrayInputStream(bad.toByteArray()));
+    t.checkException(new IOException("Stream has a corrupt block"), in, "fillBlock");
+    t.checkConstructorException(new IOException("Stream has an invalid header length"),
+        "HuffmanInputStream",
+        new ByteArrayInputStream(new byte[] { 0, 0, 0, 10, -1, 0, 0, 0 }), 10);
+    t.checkConstructorException(new IOException("Stream has an invalid header"),
+        "HuffmanInputStream",
+        new ByteArrayInputStream(new byte[] { 0, 0, 0, 10, 0, 0, 0, 6, 0, 0, 0, 0, 10, 1 }), 10);
+    t.checkConstructorException(new IOException("Stream has an invalid header"),
+        "HuffmanInputStream",
+        new ByteArrayInputStream(new byte[] { 0, 0, 0, 10, 0, 0, 0, 5, 7, 0, 0, 0, 0 }), 10);
+    t.checkConstructorException(new IOException("Stream has an invalid block size"),
+        "HuffmanInputStream", new ByteArrayInputStream(new byte[] { 0, 0, 0, 11 }), 10);
+    t.checkConstructorException(new IOException("Stream has an invalid block size"),
+        "HuffmanInputStream", new ByteArrayInputStream(new byte[] { -1, 0, 0, 0 }), 10);
+    t.checkConstructorException(new IllegalArgumentException("Block size is out of range"),
+        "HuffmanInputStream", new ByteArrayInputStream(new byte[] { 0, 0, 0, 1 }), 1 << 25);
+  }
+
+  // to test that huffman streams written with large blocks read back with the default
+  // maximum block size
+  void testHuffmanStreamLargeBlocks(Tester t) throws IOException {
+    this.init();
+    CanonicalCode code = this.huffman1.canonicalCode();
+    byte[] original = new byte[300000];
+    for (int idx = 0; idx < original.length; idx++) {
+      original[idx] = (byte) "cabdaf".charAt(idx % 1000 * (idx % 1000) % 6);
+    }
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    HuffmanOutputStream out = new HuffmanOutputStream(code, compressed, 1 << 20);
+    out.write(original, 0, original.length);
+    out.close();
+    HuffmanInputStream in = new HuffmanInputStream(
+        new ByteArrayInputStream(compressed.toByteArray()));
+    byte[] decoded = new byte[original.length];
+    int length = 0;
+    while (length < decoded.length) {
+      length += in.read(decoded, length, decoded.length - length);
+    }
+    t.checkExpect(decoded, original);
+    t.checkExpect(in.maxBlockBits, 64L << 20);
+    t.checkExpect(in.read(), -1);
+  }
+
+  // to test the constructor, rebuild and update in AdaptiveModel
+  void testAdaptiveModel(Tester t) {
+    AdaptiveModel model = new AdaptiveModel(32);
+    t.checkExpect(model.total, 256L);
+    t.checkExpect(model.code.codeLengths['a'], 8);
+    for (int idx = 0; idx < 15; idx++) {
+      model.update('a');
+    }
+    t.checkExpect(model.counts['a'], 16L);
+    t.checkExpect(model.code.codeLengths['a'], 8);
+    model.update('a');
+    t.checkExpect(model.code.codeLengths['a'] < 8, true);
+    t.checkExpect(model.interval, 32);
+    t.checkExpect(model.untilRebuild, 32);
+    for (int idx = 0; idx < 32; idx++) {
+      model.update('a');
+    }
+    t.checkExpect(model.interval, 32);
+    for (int idx = 0; idx < AdaptiveModel.MAX_TOTAL; idx++) {
+      model.update('b');
+    }
+    t.checkExpect(model.total <= AdaptiveModel.MAX_TOTAL, true);
+    t.checkExpect(model.counts['z'], 1L);
+    t.checkExpect(model.code.codeLengths['b'] < model.code.codeLengths['a'], true);
+    t.checkExpect(model.code.tree.height() <= DecodeTable.MAX_TABLE_BITS, true);
+    t.checkConstructorException(new IllegalArgumentException(
+        "Rebuild interval must be positive"), "AdaptiveModel", 0);
+  }
+
+  // to test encode and decodeBytes in AdaptiveModel
+  void testAdaptiveModelCoding(Tester t) {
+    byte[] original = new byte[20000];
+    for (int idx = 0; idx < original.length; idx++) {
+      original[idx] = (byte) (idx < 10000 ? "aaab".charAt(idx % 4) : "xyz".charAt(idx % 3));
+    }
+    AdaptiveModel encoder = new AdaptiveModel();
+    BitBuffer encoded = new BitBuffer();
+    encoder.encode(original[0] & 0xFF, encoded);
+    encoder.encode(original, 1, original.length - 1, encoded);
+    AdaptiveModel decoder = new AdaptiveModel();
+    t.checkExpect(decoder.decodeBytes(encoded, 0, encoded.size()), original);
+    t.checkExpect(decoder.counts, encoder.counts);
+    t.checkExpect(encoded.size() < original.length * 4L, true);
+    t.checkException(new IllegalArgumentException("Encoded bits end partway through a code"),
+        new AdaptiveModel(), "decodeBytes", new BitBuffer(new long[] { 0 }, 3), 0L, 3L);
+  }
+
+  // to test writing to and reading from adaptive streams
+  void testAdaptiveStreams(Tester t) throws IOException {
+    StringBuilder message = new StringBuilder();
+    for (int idx = 0; idx < 5000; idx++) {
+      message.append("cabdaf".charAt(idx * idx % 6));
+    }
+    byte[] original = message.toString().getBytes(StandardCharsets.ISO_8859_1);
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    AdaptiveOutputStream out = new AdaptiveOutputStream(compressed, 700);
+    out.write(original[0]);
+    out.write(original, 1, original.length - 1);
+    out.close();
+    out.close();
+
+    AdaptiveInputStream in = new AdaptiveInputStream(
+        new ByteArrayInputStream(compressed.toByteArray()), 700);
+    byte[] decoded = new byte[original.length];
+    decoded[0] = (byte) in.read();
+    int length = 1;
+    while (length < decoded.length) {
+      length += in.read(decoded, length, decoded.length - length);
+    }
+    t.checkExpect(decoded, original);
+    t.checkExpect(in.read(), -1);
+    t.checkExpect(in.read(decoded, 0, 5), -1);
+    t.checkExpect(compressed.size() < original.length / 2, true);
+    t.checkConstructorException(new IllegalArgumentException("Block size is out of range"),
+        "AdaptiveOutputStream", compressed, 0);
+  }
+
+  // to test adaptive streams over channels, flushing part of a block and corrupt data
+  void testAdaptiveStreamChannels(Tester t) throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    AdaptiveOutputStream out = new AdaptiveOutputStream(Channels.newChannel(compressed));
+    out.write("cab".getBytes(StandardCharsets.ISO_8859_1));
+    out.flush();
+    t.checkExpect(compressed.size(), 4 + 4 + 3);
+    out.write("da".getBytes(StandardCharsets.ISO_8859_1));
+    out.close();
+    AdaptiveInputStream in = new AdaptiveInputStream(
+        Channels.newChannel(new ByteArrayInputStream(compressed.toByteArray())));
+    byte[] decoded = new byte[10];
+    t.checkExpect(in.read(decoded, 0, 10), 3);
+    t.checkExpect(in.available(), 0);
+    t.checkExpect(in.read(decoded, 3, 10 - 3), 2);
+    t.checkExpect(new String(decoded, 0, 5, StandardCharsets.ISO_8859_1), "cabda");
+
+    AdaptiveInputStream tooLong = new AdaptiveInputStream(
+        new ByteArrayInputStream(new byte[] { 0, 0, 0, 2, 0, 0, 0, 23 }), 2);
+    t.checkException(new IOException("Stream has a corrupt block"), tooLong, "fillBlock");
+    AdaptiveInputStream cutOff = new AdaptiveInputStream(
+        new ByteArrayInputStream(new byte[] { 0, 0, 0, 2, 0, 0, 0, 3, 0 }), 2);
+    t.checkException(new IOException("Stream has a corrupt block"), cutOff, "fillBlock");
+  }
+
+  // to test the constructors and write in ArchiveWriter
+  void testArchiveWriter(Tester t) throws IOException {
+    this.init();
+    CanonicalCode code = this.huffman1.canonicalCode();
+    Path file = Files.createTempFile("archive", ".huf");
+    new ArchiveWriter(code, 4).write("cabdacabd".getBytes(StandardCharsets.ISO_8859_1), file);
+    ByteBuffer written = ByteBuffer.wrap(Files.readAllBytes(file));
+    int headerLength = code.header().length;
+    t.checkExpect(written.getInt(0), ArchiveWriter.MAGIC);
+    t.checkExpect(written.getLong(4), 9L);
+    t.checkExpect(written.getInt(12), 4);
+    t.checkExpect(written.getInt(16), 3);
+    t.checkExpect(written.getInt(20), headerLength);
+    int index = ArchiveWriter.FIXED_HEADER_SIZE + headerLength;
+    t.checkExpect(written.getLong(index), index + 3L * ArchiveWriter.INDEX_ENTRY_SIZE);
+    // c 0, a 10, b 1110, d 110
+    t.checkExpect(written.getInt(index + 8), 10);
+    t.checkExpect(written.getLong(index + 16), written.getLong(index) + 2);
+    t.checkExpect(written.getInt(index + 40), 3);
+    t.checkExpect(written.capacity(), index + 3 * ArchiveWriter.INDEX_ENTRY_SIZE + 5);
+    t.checkExpect(new ArchiveWriter(code).blockSize, ArchiveWriter.DEFAULT_BLOCK_SIZE);
+    t.checkConstructorException(new IllegalArgumentException("Block size is out of range"),
+        "ArchiveWriter", code, 0);
+    Files.delete(file);
+  }
+
+  // to test readIndex, blockCount, readBlock, sharedBlock, read and close in HuffmanArchive
+  void testHuffmanArchive(Tester t) throws IOException {
+    byte[] original = new byte[100000];
+    for (int idx = 0; idx < original.length; idx++) {
+      original[idx] = (byte) ("aaaabbc".charAt((idx % 1000) * (idx % 1000) % 7) + idx % 3);
+    }
+    Path file = Files.createTempFile("archive", ".huf");
+    ByteBuffer direct = ByteBuffer.allocateDirect(original.length + 10);
+    direct.position(10);
+    direct.put(original).position(10);
+    CanonicalCode code = new ByteHistogram(original).toHuffman().canonicalCode();
+    new ArchiveWriter(code, 4096).write(direct, file);
+    t.checkExpect(Files.size(file) < original.length / 2, true);
+    HuffmanArchive archive = new HuffmanArchive(file);
+    t.checkExpect(archive.length, 100000L);
+    t.checkExpect(archive.blockCount(), 25);
+    t.checkExpect(archive.readBlock(24), Arrays.copyOfRange(original, 24 * 4096, 100000));
+    byte[] copy = archive.readBlock(24);
+    copy[0] += 1;
+    t.checkExpect(archive.readBlock(24), Arrays.copyOfRange(original, 24 * 4096, 100000));
+    t.checkExpect(archive.readBlock(24) == archive.readBlock(24), false);
+    t.checkExpect(archive.sharedBlock(24) == archive.sharedBlock(24), true);
+    t.checkExpect(archive.cached.block, 24);
+    byte[] read = new byte[10000];
+    t.checkExpect(archive.read(4000, read, 0, 10000), 10000);
+    t.checkExpect(read, Arrays.copyOfRange(original, 4000, 14000));
+    t.checkExpect(archive.read(99995, read, 0, 10000), 5);
+    t.checkExpect(archive.read(100000, read, 0, 10), -1);
+    t.checkExpect(archive.read(100000, read, 0, 0), 0);
+    t.checkException(new IllegalArgumentException("Given block is out of bounds"), archive,
+        "readBlock", 25);
+    t.checkException(new IllegalArgumentException("Given position is negative"), archive,
+        "read", -1L, read, 0, 1);
+    archive.close();
+    t.checkExpect(archive.channel.isOpen(), false);
+
+    new ArchiveWriter(code).write(new byte[0], file);
+    HuffmanArchive empty = new HuffmanArchive(file);
+    t.checkExpect(empty.blockCount(), 0);
+    t.checkExpect(empty.read(0, read, 0, 10), -1);
+    empty.close();
+    Files.delete(file);
+  }
+
+  // to test that HuffmanArchive rejects corrupt files
+  void testHuffmanArchiveCorrupt(Tester t) throws IOException {
+    this.init();
+    CanonicalCode code = this.huffman1.canonicalCode();
+    Path file = Files.createTempFile("archive", ".huf");
+    new ArchiveWriter(code, 4).write("cabdacabd".getBytes(StandardCharsets.ISO_8859_1), file);
+    byte[] good = Files.readAllBytes(file);
+    int index = ArchiveWriter.FIXED_HEADER_SIZE + code.header().length;
+
+    byte[] badChecksum = good.clone();
+    badChecksum[index + 12] ^= 1;
+    Files.write(file, badChecksum);
+    HuffmanArchive archive = new HuffmanArchive(file);
+    t.checkException(new IOException("Block 0 failed its checksum"), archive, "readBlock", 0);
+    t.checkExpect(archive.readBlock(1).length, 4);
+    archive.close();
+
+    byte[] badBits = good.clone();
+    badBits[index + 16 + 11] = 3;
+    Files.write(file, badBits);
+    archive = new HuffmanArchive(file);
+    t.checkException(new IOException("Block 1 is corrupt"), archive, "readBlock", 1);
+    archive.close();
+
+    byte[] badMagic = good.clone();
+    badMagic[0] = 'X';
+    Files.write(file, badMagic);
+    t.checkConstructorException(new IOException("Not a huffman archive"), "HuffmanArchive",
+        file);
+    Files.write(file, new byte[] { 1, 2 });
+    t.checkConstructorException(new IOException("Not a huffman archive"), "HuffmanArchive",
+        file);
+    byte[] badCount = good.clone();
+    badCount[19] = 9;
+    Files.write(file, badCount);
+    t.checkConstructorException(new IOException("Archive has a corrupt header"),
+        "HuffmanArchive", file);
+    byte[] badBlockSize = good.clone();
+    ByteBuffer.wrap(badBlockSize).putLong(4, 3L * Integer.MAX_VALUE).putInt(12,
+        Integer.MAX_VALUE);
+    Files.write(file, badBlockSize);
+    t.checkConstructorException(new IOException("Archive has a corrupt header"),
+        "HuffmanArchive", file);
+    byte[] badCodeCount = good.clone();
+    badCodeCount[ArchiveWriter.FIXED_HEADER_SIZE + 4] = 100;
+    Files.write(file, badCodeCount);
+    t.checkConstructorException(new IOException("Archive has a corrupt header"),
+        "HuffmanArchive", file);
+    byte[] badCodeFormat = good.clone();
+    badCodeFormat[ArchiveWriter.FIXED_HEADER_SIZE] = 7;
+    Files.write(file, badCodeFormat);
+    t.checkConstructorException(new IOException("Archive has a corrupt header"),
+        "HuffmanArchive", file);
+    byte[] badOffset = good.clone();
+    badOffset[index] = 1;
+    Files.write(file, badOffset);
+    t.checkConstructorException(new IOException("Archive has a corrupt index"),
+        "HuffmanArchive", file);
+    Files.delete(file);
+  }
+
+  // to test the constructors of ByteHistogram
+  void testByteHistogramConstructors(Tester t) throws IOException {
+    byte[] bytes = new byte[300000];
+    for (int idx = 0; idx < bytes.length; idx++) {
+      bytes[idx] = (byte) (idx % 3 == 0 ? 200 : 'a');
+    }
+    t.checkExpect(new ByteHistogram().total(), 0L);
+    ByteHistogram fromArray = new ByteHistogram(bytes);
+    t.checkExpect(fromArray.counts[200], 100000L);
+    t.checkExpect(fromArray.counts['a'], 200000L);
+    ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+    direct.put(bytes).flip();
+    direct.position(3);
+    t.checkExpect(new ByteHistogram(direct).counts, new ByteHistogram(
+        Arrays.copyOfRange(bytes, 3, bytes.length)).counts);
+    Path file = Files.createTempFile("histogram", ".bin");
+    Files.write(file, bytes);
+    t.checkExpect(new ByteHistogram(file).counts, fromArray.counts);
+    Files.delete(file);
+  }
+
+  // to test add and total in ByteHistogram
+  void testByteHistogramAdd(Tester t) {
+    ByteHistogram histogram = new ByteHistogram(new byte[] { 1, 2, 2 });
+    t.checkExpect(histogram.total(), 3L);
+    histogram.add(ByteBuffer.wrap(new byte[] { 9, 9, 2, 1 }, 1, 2));
+    t.checkExpect(histogram.counts[9], 1L);
+    t.checkExpect(histogram.counts[2], 3L);
+    histogram.add(histogram.counts);
+    t.checkExpect(histogram.counts[2], 6L);
+    t.checkExpect(histogram.total(), 10L);
+  }
+
+  // to test toHuffman in ByteHistogram
+  void testToHuffman(Tester t) {
+    ByteHistogram histogram = new ByteHistogram("abacab".getBytes(StandardCharsets.ISO_8859_1));
+    Huffman model = histogram.toHuffman();
+    t.checkExpect(model.letters, new ArrayList<String>(Arrays.asList("a", "b", "c")));
+    t.checkExpect(model.freq, new ArrayList<Integer>(Arrays.asList(3, 2, 1)));
+    t.checkExpect(model.decode(model.encode("cab")), "cab");
+    histogram.counts['a'] = 10L * Integer.MAX_VALUE;
+    t.checkExpect(histogram.toHuffman().freq, new ArrayList<Integer>(
+        Arrays.asList(1952257860, 1, 1)));
+    Huffman zeros = new ByteHistogram(new byte[1000]).toHuffman();
+    t.checkExpect(zeros.letters, new ArrayList<String>(Arrays.asList("\u0000", "\u0001")));
+    t.checkExpect(zeros.freq, new ArrayList<Integer>(Arrays.asList(1000, 0)));
+    t.checkExpect(zeros.decodeBytes(zeros.encodeBytes(new byte[1000])), new byte[1000]);
+    t.checkExpect(zeros.encodeBytes(new byte[1000]).size(), 1000L);
+    t.checkExpect(zeros.canonicalCode().codeLengths, new int[] { 1, 1 });
+    Huffman empty = new ByteHistogram(new byte[0]).toHuffman();
+    t.checkExpect(empty.letters, new ArrayList<String>(Arrays.asList("\u0000", "\u0001")));
+    t.checkExpect(empty.freq, new ArrayList<Integer>(Arrays.asList(0, 0)));
+    t.checkExpect(empty.decodeBytes(empty.encodeBytes(new byte[0])), new byte[0]);
+  }
+
+  // to test compute and countChunk in CountTask
+  void testCountTask(Tester t) {
+    ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 0, 1, 1, 2, 2, 2, -1 });
+    long[] counts = new CountTask(buffer, 1, 7, 2).compute();
+    t.checkExpect(counts[0], 0L);
+    t.checkExpect(counts[1], 2L);
+    t.checkExpect(counts[2], 3L);
+    t.checkExpect(counts[255], 1L);
+    t.checkExpect(new CountTask(buffer.slice(3, 4), 0, 3, 10).countChunk()[2], 3L);
+    t.checkExpect(new CountTask(buffer, 0, 1, 2).countChunk()[0], 1L);
+  }
+
+  // to test append of another BitBuffer in BitBuffer
+  void testBitBufferAppendBuffer(Tester t) {
+    BitBuffer bits = new BitBuffer();
+    bits.append(1, 1);
+    BitBuffer other = new BitBuffer();
+    other.append(-1L, 64);
+    other.append(2, 3);
+    bits.append(other);
+    bits.append(new BitBuffer());
+    t.checkExpect(bits.size(), 68L);
+    t.checkExpect(bits.words[0], -1L);
+    t.checkExpect(bits.words[1], 0xAL << 60);
+  }
+
+  // to test decode of part of the bits in DecodeTable
+  void testDecodeTableRange(Tester t) {
+    this.init();
+    this.initHuffman();
+    DecodeTable table = new DecodeTable(this.huffman1.trees.get(0), 2);
+    BitBuffer cabda = this.huffman1.encodePacked("cabda");
+    StringBuilder decoded = new StringBuilder();
+    table.decode(cabda, 1, 7, decoded);
+    t.checkExpect(decoded.toString(), "ab");
+    table.decode(cabda, 7, 8, decoded);
+    t.checkExpect(decoded.toString(), "ab?");
+  }
+
+  // to test the constructor and blockCount in BlockEncoding
+  void testBlockEncodingConstructor(Tester t) {
+    this.init();
+    CanonicalCode code = this.huffman1.canonicalCode();
+    BlockEncoding encoding = new BlockEncoding(code, "cabdacabdac", 5);
+    t.checkExpect(encoding.blockCount(), 3);
+    t.checkExpect(encoding.offsets, new long[] { 0, 12, 24, 25 });
+    t.checkExpect(encoding.bits.toBooleanList(), code.encode("cabdacabdac").toBooleanList());
+    t.checkExpect(new BlockEncoding(code, "").offsets, new long[] { 0 });
+    t.checkExpect(new BlockEncoding(code, "cab").blockSize, BlockEncoding.DEFAULT_BLOCK_SIZE);
+    t.checkConstructorException(new IllegalArgumentException("Block size must be positive"),
+        "BlockEncoding", code, "cab", 0);
+  }
+
+  // to test encodeBlock, decodeBlock and decode in BlockEncoding
+  void testBlockEncodingDecode(Tester t) {
+    this.init();
+    CanonicalCode code = this.huffman1.canonicalCode();
+    StringBuilder message = new StringBuilder();
+    for (int idx = 0; idx < 5000; idx++) {
+      message.append("cabdaf".charAt(idx * 7 % 6));
+    }
+    BlockEncoding encoding = new BlockEncoding(code, message.toString(), 64);
+    t.checkExpect(encoding.blockCount(), 79);
+    t.checkExpect(encoding.decode(), message.toString());
+    t.checkExpect(encoding.decodeBlock(78), message.substring(78 * 64));
+    t.checkExpect(encoding.decodeBlock(3), message.substring(3 * 64, 4 * 64));
+    t.checkExpect(encoding.encodeBlock(message.codePoints().toArray(), 3).toBooleanList(),
+        code.encode(message.substring(3 * 64, 4 * 64)).toBooleanList());
+    t.checkException(new IllegalArgumentException("Given block is out of bounds"), encoding,
+        "decodeBlock", 79);
+    t.checkExpect(new BlockEncoding(code, "").decode(), "");
+  }
+
+  // to test interleaved blocks in BlockEncoding
+  void testBlockEncodingInterleaved(Tester t) {
+    this.init();
+    CanonicalCode code = this.huffman1.canonicalCode();
+    BlockEncoding encoding = new BlockEncoding(code, "cabdacabdac", 5, true);
+    t.checkExpect(encoding.offsets, new long[] { 0, 12, 24, 25 });
+    t.checkExpect(encoding.streamOffsets,
+        new long[] { 0, 3, 10, 12, 12, 15, 22, 24, 24, 25, 25, 25 });
+    t.checkExpect(encoding.blockLength(2), 1);
+    t.checkExpect(encoding.decodeInterleaved(0), new int[] { 'c', 'a', 'b', 'd', 'a' });
+    t.checkExpect(encoding.decodeBlock(2), "c");
+    t.checkExpect(encoding.decode(), "cabdacabdac");
+
+    StringBuilder message = new StringBuilder();
+    for (int idx = 0; idx < 5000; idx++) {
+      message.append("cabdaf".charAt(idx * idx % 7 % 6));
+    }
+    BlockEncoding plain = new BlockEncoding(code, message.toString(), 1000);
+    BlockEncoding interleaved = new BlockEncoding(code, message.toString(), 1000, true);
+    t.checkExpect(interleaved.decode(), message.toString());
+    t.checkExpect(interleaved.bits.size(), plain.bits.size());
+    t.checkExpect(new BlockEncoding(code, "", 10, true).decode(), "");
+
+    BlockEncoding cutOff = new BlockEncoding(code, "ffff", 4, true);
+    cutOff.bits = new BitBuffer(cutOff.bits.words, 14);
+    cutOff.offsets[1] = 14;
+    t.checkException(new IllegalArgumentException("Encoded bits end partway through a code"),
+        cutOff, "decodeInterleaved", 0);
+  }
+
+  // to test compute in EncodeBlocksTask and DecodeBlocksTask
+  void testBlocksTasks(Tester t) {
+    this.init();
+    BlockEncoding encoding = new BlockEncoding(this.huffman1.canonicalCode(), "cabda", 2);
+    BitBuffer[] encoded = new BitBuffer[3];
+    new EncodeBlocksTask(encoding, "cabda".codePoints().toArray(), encoded, 1, 3).invoke();
+    t.checkExpect(encoded[0], null);
+    t.checkExpect(encoded[2].size(), 2L);
+    String[] decoded = new String[3];
+    new DecodeBlocksTask(encoding, decoded, 0, 2).invoke();
+    t.checkExpect(decoded, new String[] { "ca", "bd", null });
+  }
+
+  // to test the int symbol constructor, toLetters, toFreq and maxSymbol in Huffman
+  void testSymbolHuffman(Tester t) {
+    this.init();
+    Huffman bytes = new Huffman(new int[] { 0, 255, 7 }, new int[] { 5, 1, 2 });
+    t.checkExpect(bytes.letters, new ArrayList<String>(Arrays.asList("\u0000", "\u00FF",
+        "\u0007")));
+    t.checkExpect(bytes.freq, new ArrayList<Integer>(Arrays.asList(5, 1, 2)));
+    t.checkExpect(bytes.maxSymbol(), 255);
+    t.checkExpect(bytes.isLetter.length, 256);
+    t.checkExpect(this.huffman1.maxSymbol(), (int) 'f');
+    t.checkExpect(Huffman.toLetters(new int[] { 0x1F600, 'a' }),
+        new ArrayList<String>(Arrays.asList("\uD83D\uDE00", "a")));
+    t.checkExpect(Huffman.toFreq(new int[] { 3, 4 }),
+        new ArrayList<Integer>(Arrays.asList(3, 4)));
+    t.checkConstructorException(new IllegalArgumentException("Symbols must be between 0 and "
+        + Character.MAX_CODE_POINT), "Huffman", new int[] { 1, -1 }, new int[] { 1, 1 });
+  }
+
+  // to test checkSymbol in Huffman
+  boolean testCheckSymbol(Tester t) {
+    this.init();
+    return t.checkException(new IllegalArgumentException(
+        "Tried to encode g but that is not part of the language."), this.huffman1,
+        "checkSymbol", (int) 'g')
+        && t.checkException(new IllegalArgumentException(
+            "Tried to encode -3 but that is not part of the language."), this.huffman1,
+            "checkSymbol", -3)
+        && t.checkException(new IllegalArgumentException(
+            "Tried to encode \u0100 but that is not part of the language."), this.huffman1,
+            "checkSymbol", 256);
+  }
+
+  // to test encodeSymbols, encodeBytes, decodeSymbols and decodeBytes in Huffman
+  void testSymbolEncodeDecode(Tester t) {
+    Huffman bytes = new Huffman(new int[] { 0, 255, 7 }, new int[] { 5, 1, 2 });
+    byte[] message = new byte[] { 0, -1, 7, 7, 0 };
+    BitBuffer encoded = bytes.encodeBytes(message);
+    t.checkExpect(encoded.size(), 8L);
+    t.checkExpect(bytes.decodeBytes(encoded), message);
+    t.checkExpect(bytes.decodeSymbols(encoded), new int[] { 0, 255, 7, 7, 0 });
+    t.checkExpect(bytes.encodeSymbols(new int[] { 0, 255, 7, 7, 0 }).toByteArray(),
+        encoded.toByteArray());
+    t.checkException(new IllegalArgumentException(
+        "Tried to encode \u0001 but that is not part of the language."), bytes, "encodeBytes",
+        new byte[] { 1 });
+    t.checkException(new IllegalArgumentException("Encoded bits end partway through a code"),
+        bytes, "decodeSymbols", new BitBuffer(encoded.words, 6));
+
+    Huffman emoji = new Huffman(new ArrayList<String>(Arrays.asList("\uD83D\uDE00", "a",
+        "\uD83D\uDE01")), new ArrayList<Integer>(Arrays.asList(4, 2, 1)));
+    String text = "a\uD83D\uDE00\uD83D\uDE01\uD83D\uDE00";
+    t.checkExpect(emoji.encodePacked(text).size(), 6L);
+    t.checkExpect(emoji.decode(emoji.encodePacked(text)), text);
+    t.checkExpect(emoji.decodeSymbols(emoji.encodePacked(text)),
+        new int[] { 'a', 0x1F600, 0x1F601, 0x1F600 });
+    t.checkException(new IllegalArgumentException(
+        "Tried to encode \uD83D\uDE02 but that is not part of the language."), emoji,
+        "encodePacked", "\uD83D\uDE02");
+  }
+
+  // to test next, decodeSymbols and decodeBytes in DecodeTable
+  void testDecodeTableSymbols(Tester t) {
+    this.init();
+    this.initHuffman();
+    DecodeTable table = new DecodeTable(this.huffman1.trees.get(0), 2);
+    BitBuffer cabda = this.huffman1.encodePacked("cabda");
+    t.checkExpect(table.next(cabda, 0, 12), DecodeTable.pack('c', 1));
+    t.checkExpect(table.next(cabda, 3, 12), DecodeTable.pack('b', 7));
+    t.checkExpect(table.next(cabda, 3, 6), -1L);
+    t.checkExpect(table.next(cabda, 10, 11), -1L);
+    t.checkExpect(table.decodeSymbols(cabda, 1, 7), new int[] { 'a', 'b' });
+    t.checkExpect(table.decodeBytes(cabda, 0, 12), "cabda".getBytes(
+        StandardCharsets.ISO_8859_1));
+    t.checkExpect(table.decodeBytes(cabda, 0, 0), new byte[0]);
+    t.checkException(new IllegalArgumentException("Encoded bits end partway through a code"),
+        table, "decodeBytes", cabda, 0L, 11L);
+    DecodeTable wide = new DecodeTable(new Node(new Leaf(300, 1), new Leaf('a', 1)), 1);
+    t.checkException(new IllegalArgumentException("Decoded a symbol that is not a byte"),
+        wide, "decodeBytes", new BitBuffer(new byte[] { 0 }, 1), 0L, 1L);
+  }
+
+  // to test pack in DecodeTable
+  boolean testPack(Tester t) {
+    return t.checkExpect(DecodeTable.pack(5, 0), 5L)
+        && t.checkExpect(DecodeTable.pack(0x10FFFF, 3), (3L << 21) | 0x10FFFF);
+  }
+
+  // to test encodeSymbols, encode of a range, decodeSymbols and decodeBytes in
+  // CanonicalCode
+  void testCanonicalSymbols(Tester t) {
+    int[] lengths = new int[0x1F602];
+    lengths[0] = 1;
+    lengths[0x1F600] = 2;
+    lengths[0x1F601] = 2;
+    CanonicalCode code = new CanonicalCode(lengths);
+    CanonicalCode read = new CanonicalCode(code.header());
+    t.checkExpect(code.header().length, 1 + 4 + 3 * 4);
+    BitBuffer encoded = read.encodeSymbols(new int[] { 0x1F601, 0, 0x1F600 });
+    t.checkExpect(encoded.toByteArray(), new byte[] { (byte) 0xD0 });
+    t.checkExpect(code.decodeSymbols(encoded), new int[] { 0x1F601, 0, 0x1F600 });
+    t.checkExpect(code.decode(encoded), "\uD83D\uDE01\u0000\uD83D\uDE00");
+    BitBuffer part = new BitBuffer();
+    code.encode(new int[] { 0x1F601, 0, 0x1F600 }, 1, 2, part);
+    t.checkExpect(part.size(), 1L);
+    t.checkExpect(new CanonicalCode(new int[] { 1, 1 }).decodeBytes(
+        new BitBuffer(new byte[] { 0x40 }, 3)), new byte[] { 0, 1, 0 });
+    t.checkConstructorException(new IllegalArgumentException("Header has an invalid symbol"),
+        "CanonicalCode", new byte[] { 1, 0, 0, 0, 1, 0x7F, 0, 0, 1 });
+  }
+
+  // to test BlockEncoding over code points and int symbols
+  void testBlockEncodingSymbols(Tester t) {
+    int[] lengths = new int[0x1F602];
+    lengths['a'] = 1;
+    lengths[0x1F600] = 2;
+    lengths[0x1F601] = 2;
+    CanonicalCode code = new CanonicalCode(lengths);
+    String text = "a\uD83D\uDE00a\uD83D\uDE01\uD83D\uDE00";
+    BlockEncoding encoding = new BlockEncoding(code, text, 2);
+    t.checkExpect(encoding.length, 5);
+    t.checkExpect(encoding.blockCount(), 3);
+    t.checkExpect(encoding.decodeBlock(1), "a\uD83D\uDE01");
+    t.checkExpect(encoding.decode(), text);
+    t.checkExpect(new BlockEncoding(code, new int[] { 'a', 'a', 0x1F600 }, 1).decode(),
+        "aa\uD83D\uDE00");
+  }
+
+  // to test that a canonical code keeps its own copy of the code lengths
+  boolean testCanonicalCodeCopies(Tester t) {
+    int[] lengths = new int[] { 1, 2, 2 };
+    CanonicalCode code = new CanonicalCode(lengths);
+    lengths[0] = 5;
+    return t.checkExpect(code.codeLengths, new int[] { 1, 2, 2 });
+  }
+
+  // to test the constructor, get and size in CodecCache
+  void testCodecCache(Tester t) {
+    this.init();
+    CodecCache cache = new CodecCache(2);
+    CanonicalCode first = cache.get(this.letterList1, this.numList1);
+    t.checkExpect(first.codeLengths, this.huffman1.canonicalCode().codeLengths);
+    t.checkExpect(cache.get(new int[] { 'd', 'b', 'a', 'c', 'f' }, new int[] { 4, 2, 5, 8, 1 })
+        == first, true);
+    t.checkExpect(cache.hits, 1L);
+    t.checkExpect(cache.misses, 1L);
+    CanonicalCode second = cache.get(this.letterList2, this.numList2);
+    t.checkExpect(cache.size(), 2);
+    t.checkExpect(cache.get(this.letterList1, this.numList1) == first, true);
+    // the second code is now the least recently used, so it is the one dropped
+    cache.get(new int[] { 0, 1 }, new int[] { 1, 1 });
+    t.checkExpect(cache.size(), 2);
+    t.checkExpect(cache.get(this.letterList1, this.numList1) == first, true);
+    t.checkExpect(cache.get(this.letterList2, this.numList2) == second, false);
+    t.checkExpect(cache.misses, 4L);
+    t.checkConstructorException(new IllegalArgumentException("Capacity must be positive"),
+        "CodecCache", 0);
+  }
+
+  // to test sharing a CodecCache and its codes between threads
+  void testCodecCacheThreads(Tester t) throws InterruptedException {
+    CodecCache cache = new CodecCache();
+    int[] symbols = new int[256];
+    int[] freq = new int[256];
+    for (int idx = 0; idx < 256; idx++) {
+      symbols[idx] = idx;
+      freq[idx] = idx + 1;
+    }
+    byte[] original = new byte[10000];
+    for (int idx = 0; idx < original.length; idx++) {
+      original[idx] = (byte) (idx * 31);
+    }
+    boolean[] decodedAll = new boolean[4];
+    Thread[] threads = new Thread[4];
+    for (int idx = 0; idx < threads.length; idx++) {
+      int threadIdx = idx;
+      threads[idx] = new Thread(() -> {
+        boolean same = true;
+        for (int round = 0; round < 20; round++) {
+          CanonicalCode code = cache.get(symbols, freq);
+          BitBuffer encoded = new BitBuffer();
+          code.encode(original, original.length, encoded);
+          same = same && Arrays.equals(code.decodeBytes(encoded), original);
+        }
+        decodedAll[threadIdx] = same;
+      });
+      threads[idx].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    t.checkExpect(decodedAll, new boolean[] { true, true, true, true });
+    t.checkExpect(cache.size(), 1);
+    t.checkExpect(cache.hits + cache.misses, 80L);
+  }
+
+  // to test equals and hashCode in FrequencyKey
+  void testFrequencyKey(Tester t) {
+    int[] symbols = new int[] { 1, 2 };
+    FrequencyKey key = new FrequencyKey(symbols, new int[] { 3, 4 });
+    symbols[0] = 7;
+    t.checkExpect(key.equals(new FrequencyKey(new int[] { 1, 2 }, new int[] { 3, 4 })), true);
+    t.checkExpect(key.hashCode(),
+        new FrequencyKey(new int[] { 1, 2 }, new int[] { 3, 4 }).hashCode());
+    t.checkExpect(key.equals(new FrequencyKey(new int[] { 1, 2 }, new int[] { 4, 3 })), false);
+    t.checkExpect(key.equals("key"), false);
+  }
+
+  // to test the constructor and merge in PackageMerge
+  void testPackageMerge(Tester t) {
+    PackageMerge unlimited = new PackageMerge(new int[] { 'd', 'b', 'a', 'c', 'f' },
+        new long[] { 4, 2, 5, 8, 1 }, 10);
+    t.checkExpect(unlimited.lengths, new int[] { 3, 4, 2, 1, 4 });
+    PackageMerge limited = new PackageMerge(new int[] { 'd', 'b', 'a', 'c', 'f' },
+        new long[] { 4, 2, 5, 8, 1 }, 3);
+    t.checkExpect(limited.lengths, new int[] { 2, 3, 2, 2, 3 });
+    PackageMerge flat = new PackageMerge(new int[] { 0, 1, 2, 3 }, new long[] { 1, 1, 1, 100 },
+        2);
+    t.checkExpect(flat.lengths, new int[] { 2, 2, 2, 2 });
+    t.checkConstructorException(new IllegalArgumentException(
+        "Max length is too small for this many symbols"), "PackageMerge",
+        new int[] { 0, 1, 2 }, new long[] { 1, 1, 1 }, 1);
+    t.checkConstructorException(new IllegalArgumentException("Lists are not same size"),
+        "PackageMerge", new int[] { 0, 1 }, new long[] { 1 }, 4);
+    t.checkConstructorException(new IllegalArgumentException(
+        "Lists sizes are not greater than 1"), "PackageMerge", new int[] { 0 },
+        new long[] { 1 }, 4);
+  }
+
+  // to test codeLengths in PackageMerge
+  boolean testPackageMergeCodeLengths(Tester t) {
+    return t.checkExpect(new PackageMerge(new int[] { 2, 0 }, new long[] { 3, 9 }, 5)
+        .codeLengths(), new int[] { 1, 0, 1 });
+  }
+
+  // to test compare in WeightCompare
+  boolean testWeightCompare(Tester t) {
+    WeightCompare compare = new WeightCompare(new long[] { 5, Long.MAX_VALUE, 5 });
+    return t.checkExpect(compare.compare(0, 1), -1)
+        && t.checkExpect(compare.compare(1, 0), 1)
+        && t.checkExpect(compare.compare(0, 2), 0);
+  }
+
+  // to test length-limited canonicalCode, averageLength and limitCost in Huffman
+  void testLengthLimited(Tester t) {
+    this.init();
+    CanonicalCode limited = this.huffman1.canonicalCode(3);
+    t.checkExpect(limited.tree.height(), 3);
+    t.checkExpect(limited.decode(limited.encode("cabdaf")), "cabdaf");
+    t.checkInexact(this.huffman1.averageLength(this.huffman1.canonicalCode().codeLengths),
+        42.0 / 20, 0.0001);
+    t.checkInexact(this.huffman1.averageLength(limited.codeLengths), 43.0 / 20, 0.0001);
+    t.checkInexact(this.huffman1.limitCost(3), 43.0 / 42 - 1, 0.0001);
+    t.checkInexact(this.huffman1.limitCost(4), 0.0, 0.0001);
+
+    ArrayList<String> letters = new ArrayList<String>();
+    ArrayList<Integer> freqs = new ArrayList<Integer>();
+    int prev = 1;
+    int cur = 1;
+    for (char letter = 'a'; letter <= 'z'; letter++) {
+      letters.add(String.valueOf(letter));
+      freqs.add(cur);
+      int next = prev + cur;
+      prev = cur;
+      cur = next;
+    }
+    Huffman skewed = new Huffman(letters, freqs);
+    CanonicalCode capped = skewed.canonicalCode(DecodeTable.MAX_TABLE_BITS);
+    t.checkExpect(capped.tree.height(), DecodeTable.MAX_TABLE_BITS);
+    t.checkExpect(capped.decode(capped.encode("zyxabc")), "zyxabc");
+    t.checkExpect(skewed.limitCost(DecodeTable.MAX_TABLE_BITS) > 0, true);
+  }
+
+  // to test the constructor and scaleFreq in AnsCoder
+  void testAnsCoderConstructor(Tester t) {
+    this.init();
+    AnsCoder coder = new AnsCoder(this.letterList1, this.numList1, 5);
+    t.checkExpect(coder.scaled, new int[] { 6, 3, 8, 13, 2 });
+    t.checkExpect(coder.starts, new int[] { 0, 6, 9, 17, 30 });
+    t.checkExpect(coder.letterIdx['c'], 3);
+    t.checkExpect(coder.letterIdx['e'], -1);
+    ArrayList<String> letters = new ArrayList<String>();
+    ArrayList<Integer> freqs = new ArrayList<Integer>();
+    for (int idx = 0; idx < 40; idx++) {
+      letters.add(String.valueOf((char) ('A' + idx)));
+      freqs.add(idx == 0 ? 1000000 : 1);
+    }
+    int sum = 0;
+    for (int count : new AnsCoder(letters, freqs, 6).scaled) {
+      t.checkExpect(count >= 1, true);
+      sum += count;
+    }
+    t.checkExpect(sum, 64);
+    t.checkExpect(new AnsCoder(this.letterList1, this.numList1).tableLog,
+        AnsCoder.DEFAULT_TABLE_LOG);
+    t.checkConstructorException(new IllegalArgumentException(
+        "Table log must be between 5 and 20"), "AnsCoder", this.letterList1, this.numList1, 4);
+    t.checkConstructorException(new IllegalArgumentException(
+        "Too many letters for the table size"), "AnsCoder", letters, freqs, 5);
+    t.checkConstructorException(new IllegalArgumentException("Lists are not same size"),
+        "AnsCoder", this.letterList1, this.numList2, 11);
+  }
+
+  // to test buildTables in AnsCoder
+  void testAnsCoderTables(Tester t) {
+    this.init();
+    AnsCoder coder = new AnsCoder(this.letterList1, this.numList1, 5);
+    int[] seen = new int[5];
+    for (int state = 0; state < 32; state++) {
+      seen[coder.letterIdx[coder.decodeSymbols[state]]] += 1;
+      int next = coder.decodeBases[state];
+      t.checkExpect(next >= 0 && next + (1 << coder.decodeBits[state]) <= 32, true);
+    }
+    t.checkExpect(seen, coder.scaled);
+    int[] sorted = coder.encodeStates.clone();
+    Arrays.sort(sorted);
+    for (int idx = 0; idx < 32; idx++) {
+      t.checkExpect(sorted[idx], 32 + idx);
+    }
+  }
+
+  // to test encode, decode, the byte methods and checkSymbol in AnsCoder
+  void testAnsCoderCoding(Tester t) {
+    this.init();
+    AnsCoder coder = new AnsCoder(this.letterList1, this.numList1);
+    t.checkExpect(coder.decode(coder.encode("cabdaf")), "cabdaf");
+    t.checkExpect(coder.decode(coder.encodePacked("")), "");
+    t.checkExpect(coder.encodePacked("").size(), 32L + AnsCoder.DEFAULT_TABLE_LOG);
+    t.checkExpect(coder.checkSymbol('a'), 2);
+    t.checkException(new IllegalArgumentException(
+        "Tried to encode e but that is not part of the language."), coder, "checkSymbol",
+        (int) 'e');
+    BitBuffer cutOff = coder.encodePacked("fffff");
+    t.checkException(new IllegalArgumentException("Encoded bits end partway through a code"),
+        coder, "decodeSymbols", new BitBuffer(cutOff.words, cutOff.size() - 1));
+    t.checkException(new IllegalArgumentException(
+        "Encoded bits are missing the count or state"), coder, "decodeSymbols",
+        new BitBuffer(new long[] { 0 }, 40));
+    t.checkException(new IllegalArgumentException("Encoded bits have an invalid count"),
+        coder, "decodeSymbols", new BitBuffer(new long[] { -1L }, 64));
+
+    int[] symbols = new int[256];
+    int[] freqs = new int[256];
+    byte[] data = new byte[20000];
+    for (int idx = 0; idx < 256; idx++) {
+      symbols[idx] = idx;
+      freqs[idx] = idx < 2 ? 5000 : 1;
+    }
+    for (int idx = 0; idx < data.length; idx++) {
+      data[idx] = (byte) (idx % 97 == 0 ? idx % 256 : idx % 2);
+    }
+    AnsCoder bytes = new AnsCoder(Huffman.toLetters(symbols), Huffman.toFreq(freqs));
+    t.checkExpect(bytes.decodeBytes(bytes.encodeBytes(data)), data);
+    t.checkException(new IllegalArgumentException("Decoded a symbol that is not a byte"),
+        new AnsCoder(new ArrayList<String>(Arrays.asList("a", "\u0100")),
+            new ArrayList<Integer>(Arrays.asList(1, 1))),
+        "decodeBytes", new AnsCoder(new ArrayList<String>(Arrays.asList("a", "\u0100")),
+            new ArrayList<Integer>(Arrays.asList(1, 1))).encodePacked("\u0100"));
+  }
+
+  // to test that AnsCoder beats Huffman on skewed frequencies, and CoderReport
+  void testCoderReport(Tester t) {
+    ArrayList<String> letters = new ArrayList<String>(Arrays.asList("a", "b", "c", "d"));
+    ArrayList<Integer> freqs = new ArrayList<Integer>(Arrays.asList(97, 1, 1, 1));
+    byte[] data = new byte[10000];
+    for (int idx = 0; idx < data.length; idx++) {
+      data[idx] = (byte) (idx % 100 < 97 ? 'a' : "bcd".charAt(idx % 100 - 97));
+    }
+    CoderReport huffman = new CoderReport(new Huffman(letters, freqs), data, 2);
+    CoderReport ans = new CoderReport(new AnsCoder(letters, freqs), data, 2);
+    t.checkInexact(huffman.ratio(), 1.05 / 8, 0.0001);
+    t.checkExpect(ans.ratio() < 0.3 / 8, true);
+    t.checkExpect(ans.encodeBytesPerSecond() > 0, true);
+    t.checkExpect(ans.decodeBytesPerSecond() > 0, true);
+    t.checkExpect(ans.toString().startsWith("ratio 0.0"), true);
+    t.checkExpect(new CoderReport(new AnsCoder(letters, freqs), new byte[0], 1).ratio(), 0.0);
+    t.checkConstructorException(new IllegalArgumentException("Rounds must be positive"),
+        "CoderReport", new AnsCoder(letters, freqs), data, 0);
+  }
+
+  // to test the constructor, hash and parse in Lz77
+  void testLz77(Tester t) {
+    LzTokens tokens = new Lz77().parse("abcabcabcx".getBytes(StandardCharsets.ISO_8859_1));
+    t.checkExpect(tokens.count, 5);
+    t.checkExpect(Arrays.copyOf(tokens.lengths, 5), new int[] { 0, 0, 0, 6, 0 });
+    t.checkExpect(Arrays.copyOf(tokens.values, 5), new int[] { 'a', 'b', 'c', 3, 'x' });
+    t.checkExpect(new Lz77().parse(new byte[0]).count, 0);
+    t.checkExpect(Lz77.hash(new byte[] { 1, 2, 3, 1, 2, 3 }, 0),
+        Lz77.hash(new byte[] { 1, 2, 3, 1, 2, 3 }, 3));
+
+    byte[] zeros = new byte[1000];
+    LzTokens runs = new Lz77().parse(zeros);
+    t.checkExpect(runs.count, 5);
+    t.checkExpect(Arrays.copyOf(runs.lengths, 5), new int[] { 0, 258, 258, 258, 225 });
+    t.checkExpect(runs.values[1], 1);
+
+    // the repeat is 300 bytes back, so a 256-byte window can't see it
+    byte[] far = new byte[600];
+    int random = 1;
+    for (int idx = 0; idx < 300; idx++) {
+      random = random * 1103515245 + 12345;
+      far[idx] = (byte) (random >>> 16);
+      far[idx + 300] = far[idx];
+    }
+    t.checkExpect(new Lz77(256, 8).parse(far).count > 500, true);
+    t.checkExpect(new Lz77(512, 8).parse(far).count < 310, true);
+    t.checkConstructorException(new IllegalArgumentException(
+        "Window size must be a power of 2 between 256 and 16777216"), "Lz77", 1000, 8);
+    t.checkConstructorException(new IllegalArgumentException("Max chain must be positive"),
+        "Lz77", 256, 0);
+  }
+
+  // to test addLiteral, addMatch and add in LzTokens
+  void testLzTokens(Tester t) {
+    LzTokens tokens = new LzTokens();
+    for (int idx = 0; idx < 20; idx++) {
+      tokens.addLiteral(idx);
+    }
+    tokens.addMatch(5, 9);
+    t.checkExpect(tokens.count, 21);
+    t.checkExpect(tokens.lengths.length, 32);
+    t.checkExpect(tokens.lengths[20], 5);
+    t.checkExpect(tokens.values[20], 9);
+    t.checkExpect(tokens.values[19], 19);
+  }
+
+  // to test lengthCode, distanceCode, distanceExtra and distanceBase in LzCoder
+  void testLzCoderCodes(Tester t) {
+    t.checkExpect(LzCoder.lengthCode(3), 0);
+    t.checkExpect(LzCoder.lengthCode(12), 8);
+    t.checkExpect(LzCoder.lengthCode(257), 27);
+    t.checkExpect(LzCoder.lengthCode(258), 28);
+    t.checkExpect(LzCoder.distanceCode(1), 0);
+    t.checkExpect(LzCoder.distanceCode(4), 3);
+    t.checkExpect(LzCoder.distanceCode(5), 4);
+    t.checkExpect(LzCoder.distanceCode(7), 5);
+    t.checkExpect(LzCoder.distanceCode(24577), 29);
+    t.checkExpect(LzCoder.distanceCode(32768), 29);
+    t.checkExpect(LzCoder.distanceCode(32769), 30);
+    t.checkExpect(LzCoder.distanceBase(29), 24577);
+    t.checkExpect(LzCoder.distanceExtra(29), 13);
+    boolean inRange = true;
+    for (int distance = 1; distance < 70000; distance += 13) {
+      int code = LzCoder.distanceCode(distance);
+      inRange = inRange && distance >= LzCoder.distanceBase(code)
+          && distance < LzCoder.distanceBase(code) + (1 << LzCoder.distanceExtra(code));
+    }
+    t.checkExpect(inRange, true);
+  }
+
+  // to test codeFor, appendHeader, readHeader, headerEnd and readBits in LzCoder
+  void testLzCoderHeaders(Tester t) {
+    t.checkExpect(LzCoder.codeFor(new int[] { 0, 0, 5, 0 }).codeLengths,
+        new int[] { 1, 0, 1 });
+    t.checkExpect(LzCoder.codeFor(new int[] { 0, 0, 0 }).codeLengths, new int[] { 1, 1 });
+    t.checkExpect(LzCoder.codeFor(new int[] { 4, 0, 5, 6 }).codeLengths,
+        new int[] { 2, 0, 2, 1 });
+    CanonicalCode code = LzCoder.codeFor(new int[] { 4, 0, 5, 6 });
+    BitBuffer encoded = new BitBuffer();
+    encoded.append(1, 3);
+    LzCoder.appendHeader(code.header(), encoded);
+    t.checkExpect(encoded.size(), 3 + 32 + code.header().length * 8L);
+    t.checkExpect(LzCoder.readHeader(encoded, 3).codeLengths, code.codeLengths);
+    t.checkException(new IllegalArgumentException(
+        "Encoded bits end partway through a header"), new LzCoder(), "readHeader",
+        new BitBuffer(encoded.words, encoded.size() - 1), 3L);
+    t.checkExpect(LzCoder.headerEnd(encoded, 3), encoded.size());
+    t.checkExpect(LzCoder.readBits(encoded, 0, 3), 1L);
+    t.checkExpect(LzCoder.readBits(encoded, 0, 0), 0L);
+
+    // a header with a trailing byte still parses, so decoding must skip its stored length
+    LzCoder coder = new LzCoder();
+    byte[] original = "abcabcabcabd".getBytes(StandardCharsets.ISO_8859_1);
+    BitBuffer plain = coder.encodeBytes(original);
+    int headerLength = (int) plain.peek(0, 32);
+    BitBuffer padded = new BitBuffer();
+    padded.append(headerLength + 1, 32);
+    for (int pos = 0; pos < headerLength; pos++) {
+      padded.append(plain.peek(32 + pos * 8L, 8), 8);
+    }
+    padded.append(0, 8);
+    for (long idx = 32 + headerLength * 8L; idx < plain.size(); idx++) {
+      padded.append(plain.peek(idx, 1), 1);
+    }
+    t.checkExpect(coder.decodeBytes(padded), original);
+  }
+
+  // to test encoding and decoding in LzCoder
+  void testLzCoder(Tester t) {
+    StringBuilder log = new StringBuilder();
+    for (int idx = 0; idx < 2000; idx++) {
+      log.append("GET /index.html 200 user=").append(idx % 17).append("\n");
+    }
+    byte[] original = log.toString().getBytes(StandardCharsets.UTF_8);
+    LzCoder coder = new LzCoder();
+    BitBuffer encoded = coder.encodeBytes(original);
+    t.checkExpect(coder.decodeBytes(encoded), original);
+    t.checkExpect(encoded.size() < original.length * 8L / 20, true);
+    ByteHistogram histogram = new ByteHistogram(original);
+    t.checkExpect(encoded.size() * 5 < histogram.toHuffman().encodeBytes(original).size(), true);
+    t.checkExpect(coder.decode(coder.encodePacked("to be or not to be \u00e9")),
+        "to be or not to be \u00e9");
+    t.checkExpect(coder.decodeBytes(coder.encodeBytes(new byte[0])), new byte[0]);
+    LzCoder big = new LzCoder(new Lz77(1 << 17, 16));
+    t.checkExpect(big.decodeBytes(big.encodeBytes(original)), original);
+    t.checkException(new IllegalArgumentException("Encoded bits end partway through a code"),
+        coder, "decodeBytes", new BitBuffer(encoded.words, encoded.size() - 40));
+  }
+
+  // to test the constructor, frequencies and message in HuffmanBenchmark
+  void testHuffmanBenchmarkData(Tester t) {
+    t.checkExpect(HuffmanBenchmark.frequencies("uniform", 3), new int[] { 1000, 1000, 1000 });
+    t.checkExpect(HuffmanBenchmark.frequencies("zipf", 4),
+        new int[] { 1000000, 500000, 333333, 250000 });
+    t.checkExpect(HuffmanBenchmark.frequencies("geometric", 23)[22], 1);
+    t.checkExpect(HuffmanBenchmark.frequencies("geometric", 23)[1], 1 << 19);
+    t.checkException(new IllegalArgumentException("Unknown shape normal"),
+        new HuffmanBenchmark(0, 1), "frequencies", "normal", 4);
+    int[] message = HuffmanBenchmark.message(new int[] { 1, 0, 3 }, 1000, 7);
+    int[] counts = new int[3];
+    for (int symbol : message) {
+      counts[symbol] += 1;
+    }
+    t.checkExpect(counts[1], 0);
+    t.checkExpect(counts[2] > 2 * counts[0], true);
+    t.checkExpect(HuffmanBenchmark.message(new int[] { 1, 0, 3 }, 1000, 7), message);
+    t.checkConstructorException(new IllegalArgumentException(
+        "Runs must be positive and warmups not negative"), "HuffmanBenchmark", 0, 0);
+  }
+
+  // to test allocatedBytes, measure and run in HuffmanBenchmark
+  void testHuffmanBenchmarkRun(Tester t) {
+    HuffmanBenchmark benchmark = new HuffmanBenchmark(1, 3);
+    int[] calls = new int[1];
+    BenchmarkResult result = benchmark.measure("count", () -> calls[0] += 1, 10);
+    t.checkExpect(calls[0], 4);
+    t.checkExpect(result.runs, 3);
+    t.checkExpect(result.symbols, 10L);
+    t.checkExpect(HuffmanBenchmark.allocatedBytes() != 0, true);
+    ByteArrayOutputStream printed = new ByteArrayOutputStream();
+    benchmark.run(1 << 10, new PrintStream(printed));
+    String[] lines = printed.toString().split("\n");
+    t.checkExpect(lines.length, 4 * 3 * 3);
+    t.checkExpect(lines[0].startsWith("mergeAll uniform 4"), true);
+    t.checkExpect(lines[2].startsWith("decode uniform 4 x1024"), true);
+  }
+
+  // to test the methods of BenchmarkResult
+  void testBenchmarkResult(Tester t) {
+    BenchmarkResult result = new BenchmarkResult("encode", 4, 2000000000L, 400, 1000);
+    t.checkInexact(result.opsPerSecond(), 2.0, 0.0001);
+    t.checkInexact(result.symbolsPerSecond(), 2000.0, 0.0001);
+    t.checkExpect(result.allocatedPerOp(), 100L);
+    t.checkExpect(new BenchmarkResult("decode", 4, 1, -1, 1).allocatedPerOp(), -1L);
+    t.checkExpect(result.toString().contains("2.0 ops/s"), true);
+    t.checkExpect(result.toString().endsWith("100 B/op"), true);
+  }
+
+  // to test entropy and maxDepth in Huffman
+  void testHuffmanModelStats(Tester t) {
+    this.init();
+    t.checkInexact(this.huffman1.entropy(), 2.0414, 0.0001);
+    t.checkInexact(this.huffman2.entropy(), 1.4605, 0.0001);
+    t.checkExpect(this.huffman1.maxDepth(), 4);
+    t.checkExpect(this.huffman2.maxDepth(), 2);
+    t.checkInexact(new Huffman(new int[] { 0, 1 }, new int[] { 0, 5 }).entropy(), 0.0, 0.0001);
+  }
+
+  // to test setCounters, startTimer, countEncode and countDecode in Huffman
+  void testHuffmanCounters(Tester t) {
+    this.init();
+    t.checkExpect(this.huffman1.counters, null);
+    t.checkExpect(this.huffman1.startTimer(), 0L);
+    CodecStats stats = new CodecStats();
+    this.huffman1.setCounters(stats);
+    t.checkExpect(this.huffman1.startTimer() > 0, true);
+    BitBuffer encoded = this.huffman1.encodePacked("cabdaf");
+    this.huffman1.encodePacked("cab");
+    t.checkExpect(stats.builds.sum(), 1L);
+    t.checkExpect(stats.encodedSymbols.sum(), 9L);
+    t.checkExpect(stats.encodedBits.sum(), 23L);
+    t.checkExpect(this.huffman1.decode(encoded), "cabdaf");
+    t.checkExpect(stats.builds.sum(), 2L);
+    t.checkExpect(stats.decodedSymbols.sum(), 6L);
+    this.huffman1.decodeSymbols(encoded);
+    this.huffman1.encodeSymbols(new int[] { 'c', 'c' });
+    t.checkExpect(stats.decodedSymbols.sum(), 12L);
+    t.checkExpect(stats.encodedSymbols.sum(), 11L);
+    t.checkExpect(stats.builds.sum(), 2L);
+
+    Huffman bytes = new ByteHistogram(new byte[] { 1, 2, 2, 3, 3, 3 }).toHuffman();
+    bytes.setCounters(stats);
+    bytes.decodeBytes(bytes.encodeBytes(new byte[] { 3, 3, 1 }));
+    t.checkExpect(stats.encodedSymbols.sum(), 14L);
+    t.checkExpect(stats.decodedSymbols.sum(), 15L);
+    this.huffman1.setCounters(null);
+    this.huffman1.encodePacked("cab");
+    t.checkExpect(stats.encodedSymbols.sum(), 14L);
+  }
+
+  // to test the methods of CodecStats
+  void testCodecStats(Tester t) {
+    this.init();
+    CodecStats stats = new CodecStats();
+    t.checkInexact(stats.bitsPerSymbol(), 0.0, 0.0001);
+    stats.built(2000000);
+    stats.encoded(10, 25, 1000);
+    stats.encoded(10, 15, 1000);
+    stats.decoded(40, 4000);
+    t.checkInexact(stats.bitsPerSymbol(), 2.0, 0.0001);
+    t.checkInexact(stats.encodeSymbolsPerSecond(), 1e7, 1e-6);
+    t.checkInexact(stats.decodeSymbolsPerSecond(), 1e7, 1e-6);
+    t.checkExpect(stats.summary(this.huffman1), "model 2.100 bits vs entropy 2.041 (+2.9%), "
+        + "max depth 4, data 2.000 bits, build 2.000 ms, encode 10.0 M/s, decode 10.0 M/s");
+  }
+
+  // to test walk over a long of bits in Leaf and Node
+  void testWalkBits(Tester t) {
+    this.init();
+    Tree tree = this.huffman1.canonicalCode().tree;
+    // the canonical codes are c 0, a 10, d 110, b 1110 and f 1111
+    t.checkExpect(tree.walk(0b1100L << 60, 4, 0), DecodeTable.pack('d', 3));
+    t.checkExpect(tree.walk(-1L, 64, 5), DecodeTable.pack('f', 9));
+    t.checkExpect(tree.walk(-1L, 3, 0), -1L);
+    t.checkExpect(this.leaf1.walk(0, 0, 7), DecodeTable.pack('c', 7));
+  }
+
+  // to test encode, peek and decode in DirectCoding, and the ByteBuffer methods of
+  // Huffman and CanonicalCode
+  void testDirectCoding(Tester t) {
+    this.init();
+    CanonicalCode code = this.huffman1.canonicalCode();
+    ByteBuffer in = ByteBuffer.allocateDirect(16);
+    in.put("xcabdaf".getBytes(StandardCharsets.ISO_8859_1)).flip();
+    in.get();
+    ByteBuffer out = ByteBuffer.allocateDirect(16);
+    out.put((byte) 7);
+    // c 0, a 10, b 1110, d 110, a 10, f 1111: 0101 1101 1010 1111
+    t.checkExpect(code.encode(in, out), 16L);
+    t.checkExpect(in.remaining(), 0);
+    t.checkExpect(out.position(), 3);
+    t.checkExpect(out.get(1), (byte) 0x5D);
+    t.checkExpect(out.get(2), (byte) 0xAF);
+    out.flip();
+    out.get();
+    ByteBuffer decoded = ByteBuffer.allocate(10).order(ByteOrder.LITTLE_ENDIAN);
+    t.checkExpect(code.decode(out, 16, decoded), 6);
+    t.checkExpect(out.remaining(), 0);
+    t.checkExpect(new String(decoded.array(), 0, 6, StandardCharsets.ISO_8859_1), "cabdaf");
+
+    ByteBuffer peeked = ByteBuffer.wrap(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, (byte) 0xF0 });
+    t.checkExpect(DirectCoding.peek(peeked, 0, 9, 0), 0x0102030405060708L);
+    t.checkExpect(DirectCoding.peek(peeked, 0, 9, 4), 0x102030405060708FL);
+    t.checkExpect(DirectCoding.peek(peeked, 1, 9, 0), 0x02030405060708F0L);
+    t.checkExpect(DirectCoding.peek(peeked, 0, 2, 8), 0x0200000000000000L);
+
+    t.checkException(new IllegalArgumentException("Bit count is out of range"), code, "decode",
+        ByteBuffer.allocate(1), 9L, ByteBuffer.allocate(10));
+    t.checkException(new IllegalArgumentException("Encoded bits end partway through a code"),
+        code, "decode", ByteBuffer.wrap(new byte[] { (byte) 0xF0 }), 3L,
+        ByteBuffer.allocate(10));
+    t.checkException(new IllegalArgumentException(
+        "Tried to encode g but that is not part of the language."), code, "encode",
+        ByteBuffer.wrap(new byte[] { 'g' }), ByteBuffer.allocate(10));
+  }
+
+  // to test the ByteBuffer methods of Huffman with codes longer than the decode table
+  void testDirectCodingLongCodes(Tester t) {
+    int[] symbols = new int[26];
+    int[] freqs = new int[26];
+    int prev = 1;
+    int cur = 1;
+    for (int idx = 0; idx < 26; idx++) {
+      symbols[idx] = idx * 9;
+      freqs[idx] = cur;
+      int next = prev + cur;
+      prev = cur;
+      cur = next;
+    }
+    Huffman huffman = new Huffman(symbols, freqs);
+    byte[] original = new byte[3000];
+    for (int idx = 0; idx < original.length; idx++) {
+      original[idx] = (byte) symbols[idx * idx % 26];
+    }
+    ByteBuffer out = ByteBuffer.allocateDirect(original.length * 4);
+    long bitCount = huffman.encodeBytes(ByteBuffer.wrap(original), out);
+    t.checkExpect(bitCount, huffman.encodeBytes(original).size());
+    out.flip();
+    ByteBuffer decoded = ByteBuffer.allocateDirect(original.length);
+    t.checkExpect(huffman.decodeBytes(out, bitCount, decoded), original.length);
+    byte[] copied = new byte[original.length];
+    decoded.flip().get(copied);
+    t.checkExpect(copied, original);
+    int[] wideLengths = new int[257];
+    wideLengths[0] = 1;
+    wideLengths[256] = 1;
+    t.checkException(new IllegalArgumentException("Decoded a symbol that is not a byte"),
+        new CanonicalCode(wideLengths), "decode", ByteBuffer.wrap(new byte[] { -1 }), 1L,
+        ByteBuffer.allocate(1));
+  }
+
+  // to test height in Tree
+  boolean testHeight(Tester t) {
+    this.init();
+    this.initHuffman();
+    return t.checkExpect(this.leaf1.height(), 0)
+        && t.checkExpect(this.node2.height(), 2)
+        && t.checkExpect(this.huffman1.trees.get(0).height(), 4);
+  }
+
+  // to test the constructor, addSymbol and addSubtree in DecodeTable
+  void testDecodeTableConstructor(Tester t) {
+    this.init();
+    DecodeTable table = new DecodeTable(this.node2, 2);
+    t.checkExpect(table.symbols, new int[] { 'g', 'g', 'c', 'd' });
+    t.checkExpect(table.lengths, new byte[] { 1, 1, 2, 2 });
+    table = new DecodeTable(this.node2, 1);
+    t.checkExpect(table.lengths, new byte[] { 1, 0 });
+    t.checkExpect(table.subtrees[1], this.node1);
+    table.addSymbol('x', 1, 1);
+    t.checkExpect(table.symbols, new int[] { 'g', 'x' });
+    table.addSubtree(this.node2, 0);
+    t.checkExpect(table.subtrees[0], this.node2);
+    t.checkConstructorException(new IllegalArgumentException(
+        "Table bits must be between 1 and 30"), "DecodeTable", this.node2, 0);
+  }
+
+  // to test decode in DecodeTable
+  boolean testDecodeTable(Tester t) {
+    this.init();
+    this.initHuffman();
+    DecodeTable narrow = new DecodeTable(this.huffman1.trees.get(0), 2);
+    DecodeTable wide = new DecodeTable(this.huffman1.trees.get(0), 4);
+    BitBuffer cabda = new BitBuffer(this.huffman1.encode("cabda"));
+    BitBuffer cut = new BitBuffer(new byte[] { 0x5B, (byte) 0xE8 }, 13);
+    return t.checkExpect(narrow.decode(cabda), "cabda")
+        && t.checkExpect(wide.decode(cabda), "cabda")
+        && t.checkExpect(narrow.decode(cut), "cabda?")
+        && t.checkExpect(wide.decode(cut), "cabda?")
+        && t.checkExpect(narrow.decode(new BitBuffer(new byte[] { (byte) 0xC0 }, 3)), "?")
+        && t.checkExpect(wide.decode(new BitBuffer(new byte[] { (byte) 0xC0 }, 3)), "?");
+  }
+
+  // to test decode in Huffman with codes longer than the decode table
+  boolean testDecodeLongCodes(Tester t) {
+    ArrayList<String> letters = new ArrayList<String>();
+    ArrayList<Integer> freqs = new ArrayList<Integer>();
+    int prev = 1;
+    int cur = 1;
+    for (char letter = 'a'; letter <= 'z'; letter++) {
+      letters.add(String.valueOf(letter));
+      freqs.add(cur);
+      int next = prev + cur;
+      prev = cur;
+      cur = next;
+    }
+    Huffman skewed = new Huffman(letters, freqs);
+    String message = "zyxwvutsrqponmlkjihgfedcbazab";
+    BitBuffer encoded = skewed.encodePacked(message);
+    return t.checkExpect(skewed.trees.get(0).height(), 25)
+        && t.checkExpect(skewed.decodeTable, null)
+        && t.checkExpect(skewed.decode(encoded), message)
+        && t.checkExpect(skewed.decodeTable.tableBits, 11)
+        && t.checkExpect(skewed.decode(new BitBuffer(encoded.words, encoded.size() - 1)),
+            message.substring(0, message.length() - 1) + "?");
+  }
+
+  // to test append and size in BitBuffer
+  void testBitBufferAppend(Tester t) {
+    BitBuffer bits = new BitBuffer();
+    t.checkExpect(bits.size(), 0L);
+    bits.append(5, 3);
+    bits.append(0, 0);
+    t.checkExpect(bits.size(), 3L);
+    t.checkExpect(bits.toBooleanList(), new ArrayList<Boolean>(Arrays.asList(true, false,
+        true)));
+    bits.append(-1L, 64);
+    bits.append(0xFF, 2);
+    t.checkExpect(bits.size(), 69L);
+    t.checkExpect(bits.words[0], -1L ^ (1L << 62));
+    t.checkExpect(bits.words[1], 0xF8L << 56);
+  }
+
+  // to test get and peek in BitBuffer
+  boolean testBitBufferGet(Tester t) {
+    BitBuffer bits = new BitBuffer(new long[] { 0xF0L << 56, 0xFFL << 56 }, 72);
+    return t.checkExpect(bits.get(0), true)
+        && t.checkExpect(bits.get(4), false)
+        && t.checkExpect(bits.get(64), true)
+        && t.checkExpect(bits.peek(2, 4), 0xCL)
+        && t.checkExpect(bits.peek(60, 8), 0x0FL)
+        && t.checkExpect(bits.peek(70, 4), 0xCL)
+        && t.checkExpect(bits.peek(0, 64), 0xF0L << 56)
+        && t.checkException(new IllegalArgumentException("Given index is out of bounds"), bits,
+            "get", 72L);
+  }
+
+  // to test the constructors of BitBuffer
+  boolean testBitBufferConstructors(Tester t) {
+    return t.checkExpect(new BitBuffer(new byte[] { (byte) 0xAB, (byte) 0xFF }, 12).words,
+        new long[] { 0xABFL << 52 })
+        && t.checkExpect(new BitBuffer(new long[] { -1L }, 4).words, new long[] { 0xFL << 60 })
+        && t.checkExpect(new BitBuffer(new ArrayList<Boolean>(Arrays.asList(false, true)))
+            .peek(0, 2), 1L)
+        && t.checkConstructorException(
+            new IllegalArgumentException("Given length does not fit in the given words"),
+            "BitBuffer", new long[1], 65L);
+  }
+
+  // to test toByteArray and toBooleanList in BitBuffer
+  boolean testBitBufferConversions(Tester t) {
+    BitBuffer bits = new BitBuffer(new byte[] { (byte) 0x81, 0x40 }, 10);
+    return t.checkExpect(bits.toByteArray(), new byte[] { (byte) 0x81, 0x40 })
+        && t.checkExpect(bits.toBooleanList(), new ArrayList<Boolean>(Arrays.asList(true, false,
+            false, false, false, false, false, true, false, true)))
+        && t.checkExpect(new BitBuffer().toByteArray(), new byte[0]);
+  }
+
   // to test compare in TreeCompare
   boolean testTreeCompare(Tester t) {
     this.init();